@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "org.example"
@@ -13,6 +14,8 @@ dependencies {
     implementation("com.pi4j:pi4j-core:2.6.1")
     implementation("com.pi4j:pi4j-plugin-raspberrypi:2.6.1")
     implementation("com.pi4j:pi4j-plugin-pigpio:2.6.1")
+    // Backs the hardware-free Simulator
+    implementation("com.pi4j:pi4j-plugin-mock:2.6.1")
 
     implementation("org.projectlombok:lombok:1.18.28")
     annotationProcessor("org.projectlombok:lombok:1.18.28")
@@ -21,6 +24,27 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter")
 }
 
+// The DSP kernels use the Vector API, still an incubator module on Java 17. Without the module
+// at run time they fall back to plain loops
+val vectorModule = "--add-modules=jdk.incubator.vector"
+
+tasks.withType<JavaCompile> {
+    options.compilerArgs.add(vectorModule)
+}
+
+tasks.withType<JavaExec> {
+    jvmArgs(vectorModule)
+}
+
 tasks.test {
     useJUnitPlatform()
+    jvmArgs(vectorModule)
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    // Allocation rate per op alongside ns/sample, the audio path is expected to show zero
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    jvmArgs.add(vectorModule)
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+package net.mchaidir.effectpi.dsp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Block-rate gain computer against the textbook per-sample log/exp compressor
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DynamicsProcessorBenchmark {
+	
+	private static final int FRAMES = 256;
+	private static final int SAMPLE_RATE = 48000;
+	private static final float THRESHOLD_DB = -18f;
+	private static final float RATIO = 4f;
+	
+	@Param({"PEAK", "RMS"})
+	private EnvelopeDetector detector;
+	
+	private final float[] input = new float[FRAMES];
+	private final float[] buffer = new float[FRAMES];
+	private DynamicsProcessor dynamics;
+	
+	private float naiveEnvelope;
+	private float attackCoefficient;
+	private float releaseCoefficient;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		for (int i = 0; i < FRAMES; i++) {
+			input[i] = random.nextFloat() * 2f - 1f;
+		}
+		
+		dynamics = new DynamicsProcessor(SAMPLE_RATE);
+		dynamics.setDetector(detector, 10.0);
+		dynamics.setThresholdDb(THRESHOLD_DB);
+		dynamics.setRatio(RATIO);
+		dynamics.setKneeDb(6f);
+		dynamics.setTimes(5.0, 100.0);
+		
+		attackCoefficient = (float) (1.0 - Math.exp(-1000.0 / (5.0 * SAMPLE_RATE)));
+		releaseCoefficient = (float) (1.0 - Math.exp(-1000.0 / (100.0 * SAMPLE_RATE)));
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public float[] blockRate() {
+		System.arraycopy(input, 0, buffer, 0, FRAMES);
+		dynamics.process(buffer, 0, FRAMES);
+		return buffer;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public float[] naivePerSample() {
+		float envelope = naiveEnvelope;
+		for (int i = 0; i < FRAMES; i++) {
+			float level = Math.abs(input[i]);
+			envelope += (level > envelope ? attackCoefficient : releaseCoefficient) * (level - envelope);
+			double levelDb = 20.0 * Math.log10(Math.max(envelope, 1e-9f));
+			double reductionDb = Math.max(0.0, levelDb - THRESHOLD_DB) * (1.0 - 1.0 / RATIO);
+			buffer[i] = input[i] * (float) Math.exp(-reductionDb * Math.log(10.0) / 20.0);
+		}
+		naiveEnvelope = envelope;
+		return buffer;
+	}
+	
+}
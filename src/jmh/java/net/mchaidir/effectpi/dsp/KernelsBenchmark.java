@@ -0,0 +1,86 @@
+package net.mchaidir.effectpi.dsp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Vector API kernels against the scalar loops on the same block, reported per sample (per bin
+// for the complex multiply). The blend and the complex multiply are where the plain loops lose.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KernelsBenchmark {
+	
+	private static final int FRAMES = 256;
+	
+	@Param({"vector", "scalar"})
+	private String implementation;
+	
+	private final float[] dry = new float[FRAMES];
+	private final float[] wet = new float[FRAMES];
+	private final float[] gains = new float[FRAMES];
+	private final float[] buffer = new float[FRAMES];
+	private final float[] imaginary = new float[FRAMES];
+	private final float[] sumRe = new float[FRAMES];
+	private final float[] sumIm = new float[FRAMES];
+	private DspKernels kernels;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		kernels = implementation.equals("vector") ? new VectorKernels() : new ScalarKernels();
+		Random random = new Random(42);
+		for (int i = 0; i < FRAMES; i++) {
+			dry[i] = random.nextFloat() * 2f - 1f;
+			wet[i] = random.nextFloat() * 2f - 1f;
+			imaginary[i] = random.nextFloat() * 2f - 1f;
+			gains[i] = (i + 1f) / FRAMES;
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public float[] multiply() {
+		System.arraycopy(dry, 0, buffer, 0, FRAMES);
+		kernels.multiply(buffer, 0, gains, FRAMES);
+		return buffer;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public float[] clip() {
+		System.arraycopy(dry, 0, buffer, 0, FRAMES);
+		kernels.clip(buffer, 0, FRAMES, 0.5f);
+		return buffer;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public float[] blend() {
+		kernels.blend(dry, 0, wet, 0, gains, buffer, 0, FRAMES);
+		return buffer;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public float[] complexMultiplyAccumulate() {
+		kernels.complexMultiplyAccumulate(dry, imaginary, wet, gains, sumRe, sumIm, FRAMES, 0.5f);
+		return sumRe;
+	}
+	
+}
@@ -0,0 +1,86 @@
+package net.mchaidir.effectpi.dsp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Partitioned FFT convolution against a direct-form FIR over the same cabinet-length impulse
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartitionedConvolverBenchmark {
+	
+	private static final int FRAMES = 256;
+	
+	@Param({"2048", "4096", "8192"})
+	private int impulseFrames;
+	
+	@Param({"64", "256"})
+	private int partitionFrames;
+	
+	private final float[] input = new float[FRAMES];
+	private final float[] buffer = new float[FRAMES];
+	private float[] impulse;
+	private PartitionedConvolver convolver;
+	
+	private float[] history;
+	private int historyIndex;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		for (int i = 0; i < FRAMES; i++) {
+			input[i] = random.nextFloat() * 2f - 1f;
+		}
+		impulse = new float[impulseFrames];
+		for (int i = 0; i < impulseFrames; i++) {
+			impulse[i] = (float) (random.nextGaussian() * Math.exp(-8.0 * i / impulseFrames));
+		}
+		
+		convolver = new PartitionedConvolver(new ConvolutionKernel(impulse, partitionFrames));
+		// Stored twice so every window is one contiguous slice
+		history = new float[2 * impulseFrames];
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public float[] partitioned() {
+		System.arraycopy(input, 0, buffer, 0, FRAMES);
+		convolver.process(buffer, 0, FRAMES);
+		return buffer;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public float[] directForm() {
+		int taps = impulseFrames;
+		for (int i = 0; i < FRAMES; i++) {
+			historyIndex = historyIndex == 0 ? taps - 1 : historyIndex - 1;
+			history[historyIndex] = input[i];
+			history[historyIndex + taps] = input[i];
+			float sum = 0f;
+			for (int k = 0; k < taps; k++) {
+				sum += impulse[k] * history[historyIndex + k];
+			}
+			buffer[i] = sum;
+		}
+		return buffer;
+	}
+	
+}
@@ -0,0 +1,77 @@
+package net.mchaidir.effectpi.dsp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Table-driven tanh against Math.tanh over the same block, reported per sample. Both sides pay
+// the same copy to restore the input, since the shaper works in place.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaveshaperBenchmark {
+	
+	private static final int FRAMES = 256;
+	private static final float THRESHOLD = 0.4f;
+	private static final double MAX_ERROR = 1e-5;
+	
+	private final float[] source = new float[FRAMES];
+	private final float[] buffer = new float[FRAMES];
+	private Waveshaper waveshaper;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		for (int i = 0; i < FRAMES; i++) {
+			source[i] = (random.nextFloat() * 2f - 1f) * 4f;
+		}
+		waveshaper = new Waveshaper(ClippingCurve.TANH);
+		checkAccuracy();
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public float[] mathTanh() {
+		System.arraycopy(source, 0, buffer, 0, FRAMES);
+		for (int i = 0; i < FRAMES; i++) {
+			buffer[i] = (float) (Math.tanh(buffer[i] / THRESHOLD) * THRESHOLD);
+		}
+		return buffer;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public float[] waveshaperTanh() {
+		System.arraycopy(source, 0, buffer, 0, FRAMES);
+		waveshaper.process(buffer, 0, FRAMES, THRESHOLD);
+		return buffer;
+	}
+	
+	// A faster curve is worthless if it drifts, so the run fails outright past the tolerance
+	private void checkAccuracy() {
+		double maxError = 0;
+		for (float input = -8f; input <= 8f; input += 1e-4f) {
+			double expected = Math.tanh(input / THRESHOLD) * THRESHOLD;
+			maxError = Math.max(maxError, Math.abs(waveshaper.shape(input, THRESHOLD) - expected));
+		}
+		if (maxError > MAX_ERROR) {
+			throw new IllegalStateException("Waveshaper tanh error " + maxError + " exceeds " + MAX_ERROR);
+		}
+	}
+	
+}
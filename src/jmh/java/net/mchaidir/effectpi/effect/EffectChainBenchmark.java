@@ -0,0 +1,80 @@
+package net.mchaidir.effectpi.effect;
+
+import net.mchaidir.effectpi.effect.distortion.Distortion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Chains of Distortion instances, to see how dispatch and buffer hand-off scale with length
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EffectChainBenchmark {
+	
+	private static final int FRAMES = 64;
+	
+	@Param({"1", "2", "4", "8"})
+	private int chainLength;
+	
+	@Param({"44100", "48000", "96000"})
+	private int sampleRate;
+	
+	private final float[] input = new float[FRAMES];
+	private final float[] output = new float[FRAMES];
+	private final int[] intInput = new int[FRAMES];
+	private final int[] intOutput = new int[FRAMES];
+	private EffectChain effectChain;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		for (int i = 0; i < FRAMES; i++) {
+			input[i] = random.nextFloat() * 2f - 1f;
+			intInput[i] = Math.round(input[i] * EffectBase.SAMPLE_SCALE);
+		}
+		
+		List<EffectBase> effects = new ArrayList<>();
+		for (int i = 0; i < chainLength; i++) {
+			Distortion distortion = new Distortion(Map.of(), sampleRate);
+			distortion.setEnabled(true);
+			effects.add(distortion);
+		}
+		effectChain = new EffectChain(effects, FRAMES);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public float[] block() {
+		effectChain.process(input, output, FRAMES);
+		return output;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public int[] perSample() {
+		for (int i = 0; i < FRAMES; i++) {
+			intOutput[i] = effectChain.applyEffects(intInput[i]);
+		}
+		return intOutput;
+	}
+	
+}
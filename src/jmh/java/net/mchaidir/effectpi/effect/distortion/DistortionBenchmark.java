@@ -0,0 +1,78 @@
+package net.mchaidir.effectpi.effect.distortion;
+
+import net.mchaidir.effectpi.dsp.ClippingCurve;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Whole-effect cost per sample for every clipping curve, through the block and per-sample paths.
+// One core has 1e9 / sampleRate ns per sample: 22.7 at 44.1 kHz, 20.8 at 48 kHz, 10.4 at 96 kHz.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistortionBenchmark {
+	
+	static final int FRAMES = 64;
+	
+	@Param({"44100", "48000", "96000"})
+	private int sampleRate;
+	
+	@Param({"TANH", "HARD", "ASYMMETRIC", "FOLDBACK"})
+	private ClippingCurve clippingCurve;
+	
+	private final float[] input = new float[FRAMES];
+	private final int[] intInput = new int[FRAMES];
+	private final float[] output = new float[FRAMES];
+	private final int[] intOutput = new int[FRAMES];
+	private Distortion distortion;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		fillNoise(input, intInput);
+		distortion = new Distortion(Map.of(), sampleRate);
+		distortion.updateParameters(parameters -> parameters.withClippingCurve(clippingCurve));
+		distortion.setEnabled(true);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public float[] block() {
+		distortion.process(input, output, FRAMES);
+		return output;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public int[] perSample() {
+		for (int i = 0; i < FRAMES; i++) {
+			intOutput[i] = distortion.applyEffect(intInput[i]);
+		}
+		return intOutput;
+	}
+	
+	static void fillNoise(float[] input, int[] intInput) {
+		Random random = new Random(42);
+		for (int i = 0; i < input.length; i++) {
+			input[i] = random.nextFloat() * 2f - 1f;
+			intInput[i] = Math.round(input[i] * Distortion.SAMPLE_SCALE);
+		}
+	}
+	
+}
@@ -0,0 +1,65 @@
+package net.mchaidir.effectpi.effect.distortion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static net.mchaidir.effectpi.effect.distortion.DistortionBenchmark.FRAMES;
+
+// Individual Distortion stages, to see which one eats the budget
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistortionStageBenchmark {
+	
+	@Param({"44100", "48000", "96000"})
+	private int sampleRate;
+	
+	private final float[] input = new float[FRAMES];
+	private final float[] buffer = new float[FRAMES];
+	private Distortion distortion;
+	
+	@Setup(Level.Trial)
+	public void setUp() {
+		DistortionBenchmark.fillNoise(input, new int[FRAMES]);
+		distortion = new Distortion(Map.of(), sampleRate);
+		DistortionParameters parameters = distortion.getParameters();
+		distortion.updateToneFilters(
+				parameters.getLowCutoffValue(),
+				parameters.getMidCutoffValue(),
+				parameters.getHighCutoffValue());
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public float[] toneStack() {
+		System.arraycopy(input, 0, buffer, 0, FRAMES);
+		distortion.toneControl(buffer, 0, FRAMES, 1.0f, 0.8f, 1.2f);
+		return buffer;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public float[] compressor() {
+		System.arraycopy(input, 0, buffer, 0, FRAMES);
+		distortion.compress(buffer, 0, FRAMES, 0.5f, 4f);
+		return buffer;
+	}
+	
+}
@@ -0,0 +1,50 @@
+package net.mchaidir.effectpi.effect.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Floor for any effect: the cost of moving a sample through the block and per-sample paths
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CleanBenchmark {
+	
+	private static final int FRAMES = 64;
+	
+	private final Clean clean = new Clean(Map.of());
+	private final float[] input = new float[FRAMES];
+	private final float[] output = new float[FRAMES];
+	private final int[] intInput = new int[FRAMES];
+	private final int[] intOutput = new int[FRAMES];
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public float[] block() {
+		clean.process(input, output, FRAMES);
+		return output;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public int[] perSample() {
+		for (int i = 0; i < FRAMES; i++) {
+			intOutput[i] = clean.applyEffect(intInput[i]);
+		}
+		return intOutput;
+	}
+	
+}
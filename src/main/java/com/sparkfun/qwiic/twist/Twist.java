@@ -36,8 +36,11 @@ package com.sparkfun.qwiic.twist;
 import com.pi4j.io.i2c.I2C;
 import com.pi4j.io.i2c.I2CConfig;
 import com.pi4j.io.i2c.I2CProvider;
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Arrays;
+
 @Getter
 public class Twist {
 	
@@ -62,8 +65,28 @@ public class Twist {
 	private static final int REGISTER_CONNECT_GREEN = 0x13;
 	private static final int REGISTER_CONNECT_BLUE = 0x14;
 	
+	// Clicked through the high byte of since-last-press, read in one transfer by readStatus
+	private static final int STATUS_BLOCK_START = REGISTER_CLICKED;
+	private static final int STATUS_BLOCK_LENGTH = REGISTER_SINCE_LAST_PRESS + 2 - REGISTER_CLICKED;
+	
 	private final I2C device;
 	
+	// Reused by every transfer, so a Twist must only be driven from one thread
+	@Getter(AccessLevel.NONE)
+	private final byte[] oneByteBuffer = new byte[1];
+	@Getter(AccessLevel.NONE)
+	private final byte[] twoByteBuffer = new byte[2];
+	@Getter(AccessLevel.NONE)
+	private final byte[] colorBuffer = new byte[3];
+	@Getter(AccessLevel.NONE)
+	private final byte[] statusBuffer = new byte[STATUS_BLOCK_LENGTH];
+	@Getter(AccessLevel.NONE)
+	private final TwistStatus status = new TwistStatus();
+	
+	// Transfers that threw. Errors are swallowed below so the getters keep their SparkFun
+	// signatures, but counted so a caller can tell a failed read from a zero
+	private long failedTransfers;
+	
 	/**
 	 * Constructor to initialize the Qwiic Twist device with the specified I2C provider and configuration.
 	 *
@@ -75,6 +98,15 @@ public class Twist {
 		this.device = i2cProvider.create(config);
 	}
 	
+	/**
+	 * Constructor to wrap an already created I2C device, such as a simulated one.
+	 *
+	 * @param device The I2C device the Qwiic Twist is reached through.
+	 */
+	public Twist(I2C device) {
+		this.device = device;
+	}
+	
 	/**
 	 * Checks if the device is connected.
 	 *
@@ -211,16 +243,39 @@ public class Twist {
 	}
 	
 	/**
-	 * Sets the RGB color of the LED on the device.
+	 * Reads the clicked, pressed and moved flags, the count, the difference and both timers
+	 * in a single I2C transfer. The returned status is reused by every call.
+	 *
+	 * @return The status of the device, all zero if the transfer failed.
+	 */
+	public TwistStatus readStatus() {
+		try {
+			this.device.readRegister(STATUS_BLOCK_START, statusBuffer);
+		} catch (Exception e) {
+			failedTransfers++;
+			Arrays.fill(statusBuffer, (byte) 0);
+		}
+		
+		status.update(
+				(statusByte(REGISTER_CLICKED) & 0x01) != 0,
+				(statusByte(REGISTER_PRESSED) & 0x01) != 0,
+				(statusByte(REGISTER_MOVED) & 0x01) != 0,
+				statusWord(REGISTER_COUNT),
+				statusWord(REGISTER_DIFF),
+				statusWord(REGISTER_SINCE_LAST_MOVEMENT),
+				statusWord(REGISTER_SINCE_LAST_PRESS));
+		return status;
+	}
+	
+	/**
+	 * Sets the RGB color of the LED on the device in a single I2C transfer.
 	 *
 	 * @param red   The red component (0-255).
 	 * @param green The green component (0-255).
 	 * @param blue  The blue component (0-255).
 	 */
 	public void setColor(int red, int green, int blue) {
-		writeByteRegister(REGISTER_RED, (byte) red);
-		writeByteRegister(REGISTER_GREEN, (byte) green);
-		writeByteRegister(REGISTER_BLUE, (byte) blue);
+		writeColorRegisters(REGISTER_RED, red, green, blue);
 	}
 	
 	/**
@@ -287,16 +342,14 @@ public class Twist {
 	}
 	
 	/**
-	 * Sets the RGB color of the connected device.
+	 * Sets the RGB color of the connected device in a single I2C transfer.
 	 *
 	 * @param red   The red component (0-255).
 	 * @param green The green component (0-255).
 	 * @param blue  The blue component (0-255).
 	 */
 	public void connectColor(int red, int green, int blue) {
-		writeByteRegister(REGISTER_CONNECT_RED, (byte) red);
-		writeByteRegister(REGISTER_CONNECT_GREEN, (byte) green);
-		writeByteRegister(REGISTER_CONNECT_BLUE, (byte) blue);
+		writeColorRegisters(REGISTER_CONNECT_RED, red, green, blue);
 	}
 	
 	/**
@@ -398,13 +451,24 @@ public class Twist {
 		writeByteRegister(REGISTER_COLOR_CYCLE_ENABLE, (byte) (enable ? 0x01 : 0x00));
 	}
 	
+	// Helper method: a single byte out of the last status block
+	private int statusByte(int register) {
+		return statusBuffer[register - STATUS_BLOCK_START] & 0xFF;
+	}
+	
+	// Helper method: two bytes out of the last status block, decoded like readTwoByteRegister
+	private int statusWord(int register) {
+		int index = register - STATUS_BLOCK_START;
+		return (statusBuffer[index + 1] << 8) | (statusBuffer[index] & 0xFF);
+	}
+	
 	// Helper method: read a single byte from a register
 	private int readByteRegister(int register) {
 		try {
-			byte[] buffer = new byte[1];
-			this.device.readRegister(register, buffer);
-			return buffer[0] & 0xFF;
+			this.device.readRegister(register, oneByteBuffer);
+			return oneByteBuffer[0] & 0xFF;
 		} catch (Exception e) {
+			failedTransfers++;
 			return 0;
 		}
 	}
@@ -412,10 +476,10 @@ public class Twist {
 	// Helper method: read two bytes from a register
 	private int readTwoByteRegister(int register) {
 		try {
-			byte[] buffer = new byte[2];
-			this.device.readRegister(register, buffer);
-			return (buffer[1] << 8) | (buffer[0] & 0xFF);
+			this.device.readRegister(register, twoByteBuffer);
+			return (twoByteBuffer[1] << 8) | (twoByteBuffer[0] & 0xFF);
 		} catch (Exception e) {
+			failedTransfers++;
 			return 0;
 		}
 	}
@@ -425,19 +489,31 @@ public class Twist {
 		try {
 			this.device.writeRegister(register, value);
 		} catch (Exception e) {
-			// Handle the exception (if needed)
+			failedTransfers++;
+		}
+	}
+	
+	// Helper method: write red, green and blue to three consecutive registers, the firmware
+	// auto-increments the register pointer
+	private void writeColorRegisters(int register, int red, int green, int blue) {
+		try {
+			colorBuffer[0] = (byte) red;
+			colorBuffer[1] = (byte) green;
+			colorBuffer[2] = (byte) blue;
+			this.device.writeRegister(register, colorBuffer);
+		} catch (Exception e) {
+			failedTransfers++;
 		}
 	}
 	
 	// Helper method: write two bytes to a register
 	private void writeTwoByteRegister(int register, int value) {
 		try {
-			byte[] buffer = new byte[]{
-					(byte) (value & 0xFF), (byte) ((value >> 8) & 0xFF)
-			};
-			this.device.writeRegister(register, buffer);
+			twoByteBuffer[0] = (byte) (value & 0xFF);
+			twoByteBuffer[1] = (byte) ((value >> 8) & 0xFF);
+			this.device.writeRegister(register, twoByteBuffer);
 		} catch (Exception e) {
-			// Handle the exception (if needed)
+			failedTransfers++;
 		}
 	}
 }
@@ -0,0 +1,32 @@
+package com.sparkfun.qwiic.twist;
+
+import lombok.Getter;
+
+/**
+ * Snapshot of the Qwiic Twist event registers, filled by {@link Twist#readStatus()}.
+ * A Twist reuses one instance for every read, so copy out anything that must outlive the
+ * next read.
+ */
+@Getter
+public class TwistStatus {
+	
+	private boolean clicked;
+	private boolean pressed;
+	private boolean moved;
+	private int count;
+	private int diff;
+	private int sinceLastMovement;
+	private int sinceLastPress;
+	
+	void update(boolean clicked, boolean pressed, boolean moved,
+							int count, int diff, int sinceLastMovement, int sinceLastPress) {
+		this.clicked = clicked;
+		this.pressed = pressed;
+		this.moved = moved;
+		this.count = count;
+		this.diff = diff;
+		this.sinceLastMovement = sinceLastMovement;
+		this.sinceLastPress = sinceLastPress;
+	}
+	
+}
@@ -3,72 +3,115 @@ package net.mchaidir.effectpi;
 import com.pi4j.Pi4J;
 import com.pi4j.context.Context;
 import com.pi4j.io.gpio.digital.DigitalInput;
+import com.pi4j.io.gpio.digital.PullResistance;
 import com.pi4j.io.i2c.I2CConfig;
 import com.pi4j.io.i2c.I2CProvider;
 import com.pi4j.io.spi.Spi;
+import com.pi4j.io.spi.SpiBus;
+import com.pi4j.io.spi.SpiChipSelect;
+import com.pi4j.io.spi.SpiMode;
 import com.pi4j.plugin.pigpio.provider.i2c.PiGpioI2CProvider;
 import com.sparkfun.qwiic.twist.Twist;
-import net.mchaidir.effectpi.effect.EffectBase;
-import net.mchaidir.effectpi.effect.impl.Clean;
+import net.mchaidir.effectpi.audio.AudioEngine;
+import net.mchaidir.effectpi.audio.AudioEngineConfig;
+import net.mchaidir.effectpi.audio.SpiAudioDevice;
+import net.mchaidir.effectpi.control.ControlSurface;
+import net.mchaidir.effectpi.effect.EffectChain;
+import net.mchaidir.effectpi.effect.distortion.Distortion;
+import net.mchaidir.effectpi.metrics.AudioMetrics;
+
+import java.util.List;
 
-//TIP To <b>Run</b> code, press <shortcut actionId="Run"/> or
-// click the <icon src="AllIcons.Actions.Execute"/> icon in the gutter.
 public class Main {
 	
-	static final String GPIO_PROVIDER = "pigpio";
+	static final String GPIO_PROVIDER = "pigpio-digital-input";
+	static final String SPI_PROVIDER = "pigpio-spi";
+	
+	static final int I2C_BUS = 1;
+	static final int FIRST_TWIST_ADDRESS = 0x3F;
+	static final int SECOND_TWIST_ADDRESS = 0x3E;
+	
+	// BCM pins wired to each Twist's INT output
+	static final int FIRST_TWIST_INTERRUPT_PIN = 17;
+	static final int SECOND_TWIST_INTERRUPT_PIN = 27;
+	
+	static final int ADC_BAUD = 1_800_000;
+	static final int DAC_BAUD = 10_000_000;
+	
+	static final long METRICS_LOG_SECONDS = 10;
 	
 	public static void main(String[] args) throws Exception {
-		//TIP Press <shortcut actionId="ShowIntentionActions"/> with your caret at the highlighted text
-		// to see how IntelliJ IDEA suggests fixing it.
-		System.out.printf("Hello and welcome!");
-		
-		for (int i = 1; i <= 5; i++) {
-			//TIP Press <shortcut actionId="Debug"/> to start debugging your code. We have set one <icon src="AllIcons.Debugger.Db_set_breakpoint"/> breakpoint
-			// for you, but you can always add more by pressing <shortcut actionId="ToggleLineBreakpoint"/>.
-			System.out.println("i = " + i);
-		}
-		
-		EffectBase clean = new Clean();
-		
 		Context pi4j = Pi4J.newAutoContext();
+		
 		I2CProvider i2cProvider = pi4j.provider(PiGpioI2CProvider.class);
+		Twist firstTwist = new Twist(i2cProvider, createTwistConfig(pi4j, "twist-1", FIRST_TWIST_ADDRESS));
+		Twist secondTwist = new Twist(i2cProvider, createTwistConfig(pi4j, "twist-2", SECOND_TWIST_ADDRESS));
 		
-		I2CConfig firstTwistConfig = I2CConfig.newBuilder(pi4j)
-				.id("")
-				.bus(bus)
-				.device(address)
-				.build();
-		Twist firstTwist = new Twist(i2cProvider, firstTwistConfig);
+		ControlSurface controlSurface = new ControlSurface();
+		controlSurface.addTwist(firstTwist, createDigitalInput(pi4j, "twist-1-int", FIRST_TWIST_INTERRUPT_PIN));
+		controlSurface.addTwist(secondTwist, createDigitalInput(pi4j, "twist-2-int", SECOND_TWIST_INTERRUPT_PIN));
+		
+		AudioEngineConfig audioConfig = AudioEngineConfig.builder().build();
 		
+		Distortion distortion = new Distortion(firstTwist, secondTwist, audioConfig.getSampleRate());
+		distortion.setEnabled(true);
+		controlSurface.addEffect(distortion);
+		controlSurface.select(distortion);
 		
+		EffectChain effectChain = new EffectChain(List.of(distortion), audioConfig.getPeriodSize());
 		
+		Spi adc = createSpiDevice(pi4j, "adc", SpiChipSelect.CS_0, ADC_BAUD);
+		Spi dac = createSpiDevice(pi4j, "dac", SpiChipSelect.CS_1, DAC_BAUD);
+		AudioEngine audioEngine = new AudioEngine(audioConfig, new SpiAudioDevice(adc, dac, audioConfig), effectChain);
 		
+		AudioMetrics audioMetrics = new AudioMetrics(audioEngine, controlSurface);
+		audioMetrics.register();
 		
-    DigitalInput pushButton = createDigitalInput(pi4j);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			audioMetrics.close();
+			try {
+				audioEngine.stop();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			controlSurface.close();
+			pi4j.shutdown();
+		}));
 		
-		Spi spiDevice = createSpiDevice();
-		spiDevice.
+		audioEngine.start();
+		audioMetrics.startLogging(METRICS_LOG_SECONDS);
+		System.out.printf("Audio engine running, %.2f ms latency%n", audioEngine.getLatencyMillis());
 	}
 	
-	static DigitalInput createDigitalInput(Context pi4jContext) {
+	static I2CConfig createTwistConfig(Context pi4jContext, String id, int address) {
+		return I2CConfig.newBuilder(pi4jContext)
+				.id(id)
+				.bus(I2C_BUS)
+				.device(address)
+				.build();
+	}
+	
+	static DigitalInput createDigitalInput(Context pi4jContext, String id, int address) {
 		return pi4jContext.create(
 				DigitalInput.newConfigBuilder(pi4jContext)
 						.id(id)
 						.name(id)
 						.address(address)
+						.pull(PullResistance.PULL_UP)
 						.provider(GPIO_PROVIDER)
 						.build());
 	}
 	
-	Spi createSpiDevice(Context pi4jContext) {
+	static Spi createSpiDevice(Context pi4jContext, String id, SpiChipSelect chipSelect, int baud) {
 		return pi4jContext.create(
 				Spi.newConfigBuilder(pi4jContext)
-						.provider(GPIO_PROVIDER)
+						.provider(SPI_PROVIDER)
 						.id(id)
-						.name()
-						.bus()
-						.chipSelect()
-						.baud()
+						.name(id)
+						.bus(SpiBus.BUS_0)
+						.chipSelect(chipSelect)
+						.mode(SpiMode.MODE_0)
+						.baud(baud)
 						.build());
 	}
-}
\ No newline at end of file
+}
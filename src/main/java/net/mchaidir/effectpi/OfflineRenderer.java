@@ -0,0 +1,83 @@
+package net.mchaidir.effectpi;
+
+import net.mchaidir.effectpi.preset.Preset;
+import net.mchaidir.effectpi.render.ParallelRenderer;
+import net.mchaidir.effectpi.render.RenderJob;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Renders WAV files through a preset's effect chain as fast as the CPU allows, for preset
+// regression tests, re-amping takes and as a throughput benchmark. Given a directory it
+// renders every take in it. Takes and their channels are spread over all cores, each with
+// its own chain, processed in large blocks with no real-time pacing.
+public class OfflineRenderer {
+	
+	static final int DEFAULT_BLOCK_FRAMES = 4096;
+	
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: OfflineRenderer <input.wav|input dir> <output.wav|output dir>"
+					+ " [preset.properties] [block frames] [threads]");
+			System.exit(2);
+		}
+		
+		Path inputPath = Path.of(args[0]);
+		Path outputPath = Path.of(args[1]);
+		Preset preset = args.length > 2 ? Preset.load(Path.of(args[2])) : Preset.defaults();
+		int blockFrames = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_BLOCK_FRAMES;
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+		
+		List<RenderJob> jobs = createJobs(inputPath, outputPath);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			long startNanos = System.nanoTime();
+			double audioSeconds = new ParallelRenderer(pool, blockFrames)
+					.render(jobs, sampleRate -> preset.createChain(sampleRate, blockFrames));
+			double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+			
+			System.out.printf("Rendered %d takes, %.2f s of audio in %.3f s on %d threads, %.1fx realtime%n",
+					jobs.size(), audioSeconds, elapsedSeconds, threads, audioSeconds / elapsedSeconds);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	static List<RenderJob> createJobs(Path inputPath, Path outputPath) throws IOException {
+		if (!Files.isDirectory(inputPath)) {
+			return checkOutputs(List.of(new RenderJob(inputPath, outputPath)));
+		}
+		
+		Files.createDirectories(outputPath);
+		try (Stream<Path> takes = Files.list(inputPath)) {
+			return checkOutputs(takes
+					.filter(take -> take.getFileName().toString().toLowerCase().endsWith(".wav"))
+					.sorted()
+					.map(take -> new RenderJob(take, outputPath.resolve(take.getFileName())))
+					.collect(Collectors.toList()));
+		}
+	}
+	
+	// The writer truncates its file before the reader has seen it, so no output may be any input
+	private static List<RenderJob> checkOutputs(List<RenderJob> jobs) throws IOException {
+		for (RenderJob job : jobs) {
+			for (RenderJob other : jobs) {
+				if (isSameFile(job.getOutput(), other.getInput())) {
+					throw new IllegalArgumentException("Output " + job.getOutput() + " would overwrite input " + other.getInput());
+				}
+			}
+		}
+		return jobs;
+	}
+	
+	// Through links too, where both exist
+	private static boolean isSameFile(Path first, Path second) throws IOException {
+		return first.toAbsolutePath().normalize().equals(second.toAbsolutePath().normalize())
+				|| Files.exists(first) && Files.exists(second) && Files.isSameFile(first, second);
+	}
+}
@@ -0,0 +1,127 @@
+package net.mchaidir.effectpi;
+
+import com.pi4j.Pi4J;
+import com.pi4j.context.Context;
+import com.pi4j.io.gpio.digital.DigitalInput;
+import com.pi4j.io.spi.Spi;
+import com.pi4j.io.spi.SpiBus;
+import com.pi4j.io.spi.SpiChipSelect;
+import com.pi4j.io.spi.SpiConfig;
+import com.pi4j.io.spi.SpiMode;
+import com.pi4j.plugin.mock.provider.gpio.digital.MockDigitalInput;
+import com.pi4j.plugin.mock.provider.gpio.digital.MockDigitalInputProvider;
+import com.pi4j.plugin.mock.provider.i2c.MockI2CProvider;
+import com.pi4j.plugin.mock.provider.spi.MockSpiProvider;
+import com.sparkfun.qwiic.twist.Twist;
+import net.mchaidir.effectpi.audio.AudioEngine;
+import net.mchaidir.effectpi.audio.AudioEngineConfig;
+import net.mchaidir.effectpi.audio.SpiAudioDevice;
+import net.mchaidir.effectpi.control.ControlSurface;
+import net.mchaidir.effectpi.effect.EffectChain;
+import net.mchaidir.effectpi.effect.distortion.Distortion;
+import net.mchaidir.effectpi.metrics.AudioMetrics;
+import net.mchaidir.effectpi.sim.KnobScript;
+import net.mchaidir.effectpi.sim.SimulatedAdc;
+import net.mchaidir.effectpi.sim.SimulatedDac;
+import net.mchaidir.effectpi.sim.SimulatedTwist;
+import net.mchaidir.effectpi.sim.WavFile;
+
+import java.nio.file.Path;
+import java.util.List;
+
+// Runs the same engine, control surface and SPI device code as Main, against Pi4J mock
+// providers. The ADC streams a WAV file, the DAC records into another, and the Twists are
+// turned by a knob script, so the whole pipeline runs in real time with no hardware attached.
+public class Simulator {
+	
+	private static final long POLL_MILLIS = 10;
+	
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: Simulator <input.wav> <output.wav> [knob script]");
+			System.exit(2);
+		}
+		
+		WavFile input = WavFile.read(Path.of(args[0]));
+		KnobScript knobScript = KnobScript.parse(args.length > 2 ? args[2] : "");
+		
+		MockI2CProvider i2cProvider = MockI2CProvider.newInstance();
+		MockSpiProvider spiProvider = MockSpiProvider.newInstance();
+		Context pi4j = Pi4J.newContextBuilder()
+				.add(i2cProvider, spiProvider, MockDigitalInputProvider.newInstance())
+				.build();
+		
+		MockDigitalInput firstInterrupt = createInterruptPin(pi4j, "twist-1-int", Main.FIRST_TWIST_INTERRUPT_PIN);
+		MockDigitalInput secondInterrupt = createInterruptPin(pi4j, "twist-2-int", Main.SECOND_TWIST_INTERRUPT_PIN);
+		List<SimulatedTwist> simulatedTwists = List.of(
+				new SimulatedTwist(i2cProvider, Main.createTwistConfig(pi4j, "twist-1", Main.FIRST_TWIST_ADDRESS), firstInterrupt),
+				new SimulatedTwist(i2cProvider, Main.createTwistConfig(pi4j, "twist-2", Main.SECOND_TWIST_ADDRESS), secondInterrupt));
+		Twist firstTwist = new Twist(simulatedTwists.get(0));
+		Twist secondTwist = new Twist(simulatedTwists.get(1));
+		
+		ControlSurface controlSurface = new ControlSurface();
+		controlSurface.addTwist(firstTwist, firstInterrupt);
+		controlSurface.addTwist(secondTwist, secondInterrupt);
+		
+		AudioEngineConfig audioConfig = AudioEngineConfig.builder()
+				.sampleRate(input.getSampleRate())
+				.build();
+		
+		Distortion distortion = new Distortion(firstTwist, secondTwist, audioConfig.getSampleRate());
+		distortion.setEnabled(true);
+		controlSurface.addEffect(distortion);
+		controlSurface.select(distortion);
+		
+		EffectChain effectChain = new EffectChain(List.of(distortion), audioConfig.getPeriodSize());
+		
+		SimulatedAdc adc = new SimulatedAdc(spiProvider,
+				createSpiConfig(pi4j, "adc", SpiChipSelect.CS_0, Main.ADC_BAUD), input.getSamples());
+		SimulatedDac dac = new SimulatedDac(spiProvider,
+				createSpiConfig(pi4j, "dac", SpiChipSelect.CS_1, Main.DAC_BAUD),
+				input.getSamples().length + audioConfig.getLatencyFrames());
+		AudioEngine audioEngine = new AudioEngine(audioConfig, new SpiAudioDevice(adc, dac, audioConfig), effectChain);
+		
+		long startNanos = System.nanoTime();
+		audioEngine.start();
+		knobScript.play(simulatedTwists);
+		
+		while (!adc.isExhausted()) {
+			Thread.sleep(POLL_MILLIS);
+		}
+		// Let the last captured periods make it out of the DAC
+		Thread.sleep(Math.round(audioEngine.getLatencyMillis()) + POLL_MILLIS);
+		audioEngine.stop();
+		double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+		
+		knobScript.close();
+		controlSurface.close();
+		pi4j.shutdown();
+		
+		new WavFile(audioConfig.getSampleRate(), dac.getSamples()).write(Path.of(args[1]));
+		System.out.printf("Simulated %.2f s of audio in %.2f s, %d xruns, %.2f ms latency%n",
+				input.getDurationSeconds(), elapsedSeconds, audioEngine.getXrunCount(), audioEngine.getLatencyMillis());
+		System.out.println(new AudioMetrics(audioEngine, controlSurface).formatLine());
+	}
+	
+	static MockDigitalInput createInterruptPin(Context pi4jContext, String id, int address) {
+		return (MockDigitalInput) pi4jContext.create(
+				DigitalInput.newConfigBuilder(pi4jContext)
+						.id(id)
+						.name(id)
+						.address(address)
+						.provider(MockDigitalInputProvider.ID)
+						.build());
+	}
+	
+	static SpiConfig createSpiConfig(Context pi4jContext, String id, SpiChipSelect chipSelect, int baud) {
+		return Spi.newConfigBuilder(pi4jContext)
+				.provider(MockSpiProvider.ID)
+				.id(id)
+				.name(id)
+				.bus(SpiBus.BUS_0)
+				.chipSelect(chipSelect)
+				.mode(SpiMode.MODE_0)
+				.baud(baud)
+				.build();
+	}
+}
@@ -0,0 +1,12 @@
+package net.mchaidir.effectpi.audio;
+
+public interface AudioDevice extends AutoCloseable {
+	
+	// Plays one period from playback while capturing the same number of frames into capture.
+	// Returns false when the device fell behind its sample clock and had to resynchronise.
+	boolean transfer(float[] capture, float[] playback, int frames);
+	
+	@Override
+	void close();
+	
+}
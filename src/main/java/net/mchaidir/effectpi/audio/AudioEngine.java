@@ -0,0 +1,154 @@
+package net.mchaidir.effectpi.audio;
+
+import lombok.Getter;
+import net.mchaidir.effectpi.effect.EffectChain;
+import net.mchaidir.effectpi.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AudioEngine {
+	
+	// Long enough to hide the step between two presets, short enough that both chains running
+	// at once costs only a handful of periods
+	static final double CROSSFADE_MILLIS = 10.0;
+	
+	private final AudioEngineConfig config;
+	private final AudioDevice audioDevice;
+	@Getter
+	private volatile EffectChain effectChain;
+	
+	// Handed over by swapChain, picked up by the audio thread at its next period boundary
+	private final AtomicReference<EffectChain> pendingChain;
+	// Chain being faded out, audio thread only
+	private EffectChain fadingChain;
+	private int fadePosition;
+	// Equal-power fade-in gains, the fade-out runs the table backwards
+	private final float[] fadeCurve;
+	private final float[] fadeBuffer;
+	
+	// Period rings shared by capture and playback, playback trails capture by bufferCount - 1 periods
+	private final float[][] captureRing;
+	private final float[][] playbackRing;
+	
+	private final AtomicLong xrunCount;
+	// Whole period through the chain, crossfades included, against the period as budget
+	@Getter
+	private final LatencyHistogram processingHistogram;
+	@Getter
+	private volatile long processedPeriods;
+	
+	private volatile boolean running;
+	private Thread audioThread;
+	
+	public AudioEngine(AudioEngineConfig config, AudioDevice audioDevice, EffectChain effectChain) {
+		if (config.getBufferCount() < 2) {
+			throw new IllegalArgumentException("bufferCount must be at least 2");
+		}
+		
+		this.config = config;
+		this.audioDevice = audioDevice;
+		this.effectChain = effectChain;
+		effectChain.setBudgetNanos(config.getPeriodNanos());
+		this.captureRing = new float[config.getBufferCount()][config.getPeriodSize()];
+		this.playbackRing = new float[config.getBufferCount()][config.getPeriodSize()];
+		this.xrunCount = new AtomicLong();
+		this.processingHistogram = new LatencyHistogram(config.getPeriodNanos());
+		
+		this.pendingChain = new AtomicReference<>();
+		int fadeFrames = Math.max(1, (int) Math.round(CROSSFADE_MILLIS * config.getSampleRate() / 1000.0));
+		this.fadeCurve = new float[fadeFrames];
+		for (int i = 0; i < fadeFrames; i++) {
+			fadeCurve[i] = (float) Math.sin(0.5 * Math.PI * (i + 1) / (fadeFrames + 1));
+		}
+		this.fadeBuffer = new float[config.getPeriodSize()];
+	}
+	
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		
+		running = true;
+		audioThread = new Thread(this::run, "audio-engine");
+		// The JVM cannot request SCHED_FIFO, run under chrt or isolate a core for the rest
+		audioThread.setPriority(Thread.MAX_PRIORITY);
+		audioThread.start();
+	}
+	
+	public synchronized void stop() throws InterruptedException {
+		if (!running) {
+			return;
+		}
+		
+		running = false;
+		audioThread.join();
+		audioDevice.close();
+	}
+	
+	// Replaces the running chain without a click. The chain must be built and warmed up by the
+	// caller, it is crossfaded in from the next period. A chain handed over while another is still
+	// pending replaces it, the last one wins.
+	public void swapChain(EffectChain nextChain) {
+		pendingChain.set(nextChain);
+	}
+	
+	public long getXrunCount() {
+		return xrunCount.get();
+	}
+	
+	public double getLatencyMillis() {
+		return config.getLatencyFrames() * 1000.0 / config.getSampleRate();
+	}
+	
+	void run() {
+		int bufferCount = config.getBufferCount();
+		int periodSize = config.getPeriodSize();
+		long period = 0;
+		
+		while (running) {
+			int slot = (int) (period % bufferCount);
+			int playbackSlot = (int) ((period + 1) % bufferCount);
+			
+			if (!audioDevice.transfer(captureRing[slot], playbackRing[playbackSlot], periodSize)) {
+				xrunCount.incrementAndGet();
+			}
+			
+			long startNanos = System.nanoTime();
+			process(captureRing[slot], playbackRing[slot], periodSize);
+			processingHistogram.record(System.nanoTime() - startNanos);
+			
+			processedPeriods = ++period;
+		}
+	}
+	
+	private void process(float[] in, float[] out, int frames) {
+		// A new chain waits for the current fade to finish, so no chain is ever cut off
+		if (fadingChain == null && pendingChain.get() != null) {
+			fadingChain = effectChain;
+			effectChain = pendingChain.getAndSet(null);
+			effectChain.setBudgetNanos(config.getPeriodNanos());
+			fadePosition = 0;
+		}
+		
+		effectChain.process(in, out, frames);
+		if (fadingChain == null) {
+			return;
+		}
+		
+		// The chains never write their input, so the old one can run on the same period
+		fadingChain.process(in, fadeBuffer, frames);
+		int fadeFrames = fadeCurve.length;
+		for (int i = 0; i < frames; i++) {
+			int position = fadePosition + i;
+			if (position < fadeFrames) {
+				out[i] = out[i] * fadeCurve[position] + fadeBuffer[i] * fadeCurve[fadeFrames - 1 - position];
+			}
+		}
+		fadePosition += frames;
+		if (fadePosition >= fadeFrames) {
+			fadingChain = null;
+		}
+	}
+	
+}
@@ -0,0 +1,28 @@
+package net.mchaidir.effectpi.audio;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class AudioEngineConfig {
+	
+	@Builder.Default
+	private final int sampleRate = 48000;
+	
+	@Builder.Default
+	private final int periodSize = 64;
+	
+	// 2 for double buffering, 3 for triple buffering
+	@Builder.Default
+	private final int bufferCount = 2;
+	
+	public long getPeriodNanos() {
+		return periodSize * 1_000_000_000L / sampleRate;
+	}
+	
+	public int getLatencyFrames() {
+		return periodSize * bufferCount;
+	}
+	
+}
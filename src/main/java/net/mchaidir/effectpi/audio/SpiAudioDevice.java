@@ -0,0 +1,84 @@
+package net.mchaidir.effectpi.audio;
+
+import com.pi4j.io.spi.Spi;
+
+// MCP3202 12-bit ADC and MCP4822 12-bit DAC on separate chip selects. Neither part can stream
+// without toggling chip select, so a period is moved as a burst of per-sample transactions
+// paced against the sample clock.
+public class SpiAudioDevice implements AudioDevice {
+	
+	private static final int CODE_MIDPOINT = 2048;
+	private static final float CODE_SCALE = 2047f;
+	
+	// Start bit, then single-ended channel 0 MSB first
+	private static final byte ADC_START = 0x01;
+	private static final byte ADC_CHANNEL_0 = (byte) 0xA0;
+	
+	// Channel A, 1x gain, output enabled
+	private static final int DAC_CHANNEL_A = 0x3000;
+	
+	private final Spi adc;
+	private final Spi dac;
+	private final long samplePeriodNanos;
+	private final long maxLagNanos;
+	
+	private final byte[] adcWriteBuffer;
+	private final byte[] adcReadBuffer;
+	private final byte[] dacWriteBuffer;
+	
+	private long nextSampleNanos;
+	
+	public SpiAudioDevice(Spi adc, Spi dac, AudioEngineConfig config) {
+		this.adc = adc;
+		this.dac = dac;
+		this.samplePeriodNanos = 1_000_000_000L / config.getSampleRate();
+		this.maxLagNanos = config.getPeriodNanos();
+		this.adcWriteBuffer = new byte[] {ADC_START, ADC_CHANNEL_0, 0x00};
+		this.adcReadBuffer = new byte[3];
+		this.dacWriteBuffer = new byte[2];
+	}
+	
+	@Override
+	public boolean transfer(float[] capture, float[] playback, int frames) {
+		boolean onTime = true;
+		long now = System.nanoTime();
+		if (nextSampleNanos == 0 || now - nextSampleNanos > maxLagNanos) {
+			onTime = nextSampleNanos == 0;
+			nextSampleNanos = now;
+		}
+		
+		for (int i = 0; i < frames; i++) {
+			while (System.nanoTime() - nextSampleNanos < 0) {
+				Thread.onSpinWait();
+			}
+			
+			writeDac(playback[i]);
+			capture[i] = readAdc();
+			nextSampleNanos += samplePeriodNanos;
+		}
+		
+		return onTime;
+	}
+	
+	@Override
+	public void close() {
+		adc.close();
+		dac.close();
+	}
+	
+	private float readAdc() {
+		adc.transfer(adcWriteBuffer, adcReadBuffer, adcReadBuffer.length);
+		int code = ((adcReadBuffer[1] & 0x0F) << 8) | (adcReadBuffer[2] & 0xFF);
+		return (code - CODE_MIDPOINT) / CODE_SCALE;
+	}
+	
+	private void writeDac(float sample) {
+		int code = Math.round(sample * CODE_SCALE) + CODE_MIDPOINT;
+		code = Math.max(0, Math.min(code, 4095));
+		int word = DAC_CHANNEL_A | code;
+		dacWriteBuffer[0] = (byte) (word >> 8);
+		dacWriteBuffer[1] = (byte) word;
+		dac.write(dacWriteBuffer);
+	}
+	
+}
@@ -1,7 +1,11 @@
 package net.mchaidir.effectpi.common;
 
+// One knob, several parameters: turning adjusts the active layer, a click moves to the next
 public class LayeredTwistEventListener implements TwistEventListener {
 	
+	// Red, green, blue, yellow, then around again
+	private static final int[] LAYER_COLORS = {0xFF0000, 0x00FF00, 0x0000FF, 0xFFFF00};
+	
 	private int activeLayer;
 	
 	private final int layerCount;
@@ -24,9 +28,21 @@ public class LayeredTwistEventListener implements TwistEventListener {
 		activeLayer = (activeLayer - 1 + layerCount) % layerCount;
 	}
 	
+	public int getActiveLayer() {
+		return activeLayer;
+	}
+	
+	// Shows which layer the knob is on
+	@Override
+	public int getColor() {
+		return LAYER_COLORS[activeLayer % LAYER_COLORS.length];
+	}
+	
+	// The active layer sees the click before the next one takes over
 	@Override
 	public void onButtonPressed() {
 		eventListenerLayers[activeLayer].onButtonPressed();
+		toNextLayer();
 	}
 	
 	@Override
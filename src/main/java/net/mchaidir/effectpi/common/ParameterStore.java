@@ -0,0 +1,58 @@
+package net.mchaidir.effectpi.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+// Lock-free handoff of immutable parameter snapshots from control threads to the audio thread.
+// Control threads publish a modified copy, the audio thread picks up the latest one once per block.
+public class ParameterStore<T> {
+	
+	private final AtomicReference<T> published;
+	// Updates ever published, and how many of them the audio thread had seen at its last acquire
+	private final AtomicLong publishedUpdates;
+	private volatile long acquiredUpdates;
+	
+	public ParameterStore(T initial) {
+		this.published = new AtomicReference<>(initial);
+		this.publishedUpdates = new AtomicLong();
+	}
+	
+	// Control threads only, retried until no other writer raced us
+	public T update(UnaryOperator<T> updater) {
+		T previous;
+		T next;
+		do {
+			previous = published.get();
+			next = updater.apply(previous);
+		} while (!published.compareAndSet(previous, next));
+		publishedUpdates.incrementAndGet();
+		
+		return next;
+	}
+	
+	public void set(T parameters) {
+		published.set(parameters);
+		publishedUpdates.incrementAndGet();
+	}
+	
+	// Audio thread, once per block. Consumers may compare by identity to detect a change.
+	public T acquire() {
+		// Counted before the read, so an update racing it is still reported as pending
+		long updates = publishedUpdates.get();
+		T parameters = published.get();
+		acquiredUpdates = updates;
+		return parameters;
+	}
+	
+	// Any thread, does not count as the audio thread having seen the latest snapshot
+	public T peek() {
+		return published.get();
+	}
+	
+	// Updates published that the audio thread has not picked up yet
+	public long getPendingUpdates() {
+		return Math.max(0, publishedUpdates.get() - acquiredUpdates);
+	}
+	
+}
@@ -1,4 +1,16 @@
 package net.mchaidir.effectpi.common;
 
+// Listens without acting, for a Twist that is bound but has nothing to control yet
 public class StandaloneTwistEventListener implements TwistEventListener {
+	
+	@Override
+	public void onButtonPressed() {
+		
+	}
+	
+	@Override
+	public void onEncoderTurned(int encoderDelta) {
+		
+	}
+	
 }
@@ -2,8 +2,15 @@ package net.mchaidir.effectpi.common;
 
 public interface TwistEventListener {
 	
+	int NO_COLOR = -1;
+	
 	void onButtonPressed();
 	
 	void onEncoderTurned(int encoderDelta);
 	
+	// Knob LED colour as 0xRRGGBB while this listener is bound, NO_COLOR leaves the LED alone
+	default int getColor() {
+		return NO_COLOR;
+	}
+	
 }
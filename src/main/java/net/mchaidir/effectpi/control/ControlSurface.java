@@ -0,0 +1,375 @@
+package net.mchaidir.effectpi.control;
+
+import com.pi4j.io.gpio.digital.DigitalInput;
+import com.pi4j.io.gpio.digital.DigitalState;
+import com.sparkfun.qwiic.twist.Twist;
+import com.sparkfun.qwiic.twist.TwistStatus;
+import lombok.Getter;
+import net.mchaidir.effectpi.common.TwistEventListener;
+import net.mchaidir.effectpi.effect.EffectBase;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Owns every Twist and, through its I2cBusArbiter, the one thread allowed to talk to them. Each
+// physical device is read once per event, from its INT line or by polling when it has none, and
+// the event is routed to the selected effect through flat arrays indexed by device. The bus
+// thread runs at minimum priority, so control traffic always yields to the audio path.
+// Encoder turns are accelerated by their speed and coalesced: while the audio thread has not yet
+// picked up the effect's previous update, further detents are held and go out as one delta.
+// LED colours go the other way: any thread may set one without blocking, only the latest per
+// device is kept, and the bus thread writes it at a bounded rate once no input is waiting.
+public class ControlSurface implements AutoCloseable {
+	
+	public static final int MAX_TWISTS = I2cBusArbiter.MAX_DEVICES;
+	
+	// Twist asserts INT this long after the last detent, short enough for sub-10 ms response
+	private static final int INTERRUPT_TIMEOUT_MS = 5;
+	// Bounds the re-read loop should an INT line get stuck low
+	private static final int MAX_SERVICE_PASSES = 4;
+	private static final long POLL_INTERVAL_MS = 20;
+	private static final long FLUSH_INTERVAL_MS = 2;
+	// Bounds the hold when no audio thread is consuming updates
+	private static final long MAX_HOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+	// 25 Hz is smooth enough for a level meter on a knob
+	private static final long LED_INTERVAL_MS = 40;
+	private static final int NO_COLOR = -1;
+	
+	@Getter
+	private final I2cBusArbiter bus;
+	
+	// Copy-on-write at setup, read by the bus thread
+	private volatile Twist[] twists;
+	private volatile DigitalInput[] interruptPins;
+	private volatile EffectBase[] effects;
+	// routes[effect][device], null where the effect has no binding
+	private volatile TwistEventListener[][] routes;
+	private volatile int selectedEffect;
+	
+	private final AtomicIntegerArray pendingService;
+	// Latest requested colour per device as 0xRRGGBB, NO_COLOR once taken by the bus thread
+	private final AtomicIntegerArray pendingColors;
+	// Last colour on each device, bus thread only
+	private final int[] writtenColors;
+	
+	// Encoder state per device, bus thread only
+	private final long[] lastReadNanos;
+	private final long[] lastMovementNanos;
+	private final int[] heldDeltas;
+	private final int[] heldEffects;
+	private final long[] heldSinceNanos;
+	
+	public ControlSurface() {
+		this.bus = new I2cBusArbiter("control-surface");
+		this.twists = new Twist[0];
+		this.interruptPins = new DigitalInput[0];
+		this.effects = new EffectBase[0];
+		this.routes = new TwistEventListener[0][];
+		this.selectedEffect = -1;
+		this.pendingService = new AtomicIntegerArray(MAX_TWISTS);
+		this.pendingColors = new AtomicIntegerArray(MAX_TWISTS);
+		this.writtenColors = new int[MAX_TWISTS];
+		for (int device = 0; device < MAX_TWISTS; device++) {
+			pendingColors.set(device, NO_COLOR);
+			writtenColors[device] = NO_COLOR;
+		}
+		
+		this.lastReadNanos = new long[MAX_TWISTS];
+		this.lastMovementNanos = new long[MAX_TWISTS];
+		this.heldDeltas = new int[MAX_TWISTS];
+		this.heldEffects = new int[MAX_TWISTS];
+		this.heldSinceNanos = new long[MAX_TWISTS];
+		
+		bus.scheduleAtFixedRate(this::pollDevices, POLL_INTERVAL_MS);
+		bus.scheduleAtFixedRate(this::flushHeldDeltas, FLUSH_INTERVAL_MS);
+		bus.scheduleAtFixedRate(this::writeColors, LED_INTERVAL_MS);
+	}
+	
+	// interruptPin may be null, the device is then polled
+	public synchronized int addTwist(Twist twist, DigitalInput interruptPin) {
+		int device = twists.length;
+		if (device == MAX_TWISTS) {
+			throw new IllegalStateException("At most " + MAX_TWISTS + " Twists are supported");
+		}
+		
+		Twist[] nextTwists = Arrays.copyOf(twists, device + 1);
+		nextTwists[device] = twist;
+		DigitalInput[] nextPins = Arrays.copyOf(interruptPins, device + 1);
+		nextPins[device] = interruptPin;
+		interruptPins = nextPins;
+		twists = nextTwists;
+		rebuildRoutes();
+		bus.addDevice(twist, connected -> initialize(device, connected));
+		
+		if (interruptPin != null) {
+			// INT is open drain and active low
+			interruptPin.addListener(event -> {
+				if (event.state() == DigitalState.LOW) {
+					requestService(device);
+				}
+			});
+		}
+		return device;
+	}
+	
+	public synchronized void addEffect(EffectBase effect) {
+		EffectBase[] nextEffects = Arrays.copyOf(effects, effects.length + 1);
+		nextEffects[effects.length] = effect;
+		effects = nextEffects;
+		rebuildRoutes();
+	}
+	
+	// Hands the knobs to a new set of effects, such as a chain swapped in live. Each is bound to
+	// the Twists in the order they were added, and the one at the selected position is selected
+	public synchronized void replaceEffects(List<EffectBase> replacements) {
+		if (replacements.isEmpty()) {
+			throw new IllegalArgumentException("No effects to hand the Twists to");
+		}
+		
+		Twist[] twists = this.twists;
+		for (EffectBase effect : replacements) {
+			effect.bindTwists(twists);
+		}
+		int index = Math.min(Math.max(selectedEffect, 0), replacements.size() - 1);
+		// Nothing routes while the arrays are swapped
+		selectedEffect = -1;
+		effects = replacements.toArray(new EffectBase[0]);
+		rebuildRoutes();
+		select(effects[index]);
+	}
+	
+	public synchronized void select(EffectBase effect) {
+		EffectBase[] effects = this.effects;
+		int index = -1;
+		for (int i = 0; i < effects.length; i++) {
+			boolean selected = effects[i] == effect;
+			effects[i].setSelected(selected);
+			if (selected) {
+				index = i;
+			}
+		}
+		if (index < 0) {
+			throw new IllegalArgumentException("Effect was never added to the control surface");
+		}
+		selectedEffect = index;
+		
+		TwistEventListener[] listeners = routes[index];
+		for (int device = 0; device < listeners.length; device++) {
+			showColor(device, listeners[device]);
+		}
+	}
+	
+	// Never blocks, a colour set again before it was written replaces the earlier one
+	public void setColor(int device, int red, int green, int blue) {
+		if (device < 0 || device >= twists.length) {
+			throw new IllegalArgumentException("No Twist at device " + device);
+		}
+		pendingColors.set(device, (red & 0xFF) << 16 | (green & 0xFF) << 8 | blue & 0xFF);
+	}
+	
+	public void setColor(Twist twist, int red, int green, int blue) {
+		Twist[] twists = this.twists;
+		for (int device = 0; device < twists.length; device++) {
+			if (twists[device] == twist) {
+				setColor(device, red, green, blue);
+				return;
+			}
+		}
+		throw new IllegalArgumentException("Twist was never added to the control surface");
+	}
+	
+	// Devices with an event queued on the bus thread and not yet read
+	public int getQueuedDevices() {
+		int queued = 0;
+		for (int device = 0; device < MAX_TWISTS; device++) {
+			queued += pendingService.get(device);
+		}
+		return queued;
+	}
+	
+	@Override
+	public void close() {
+		bus.close();
+	}
+	
+	private void rebuildRoutes() {
+		Twist[] twists = this.twists;
+		EffectBase[] effects = this.effects;
+		TwistEventListener[][] nextRoutes = new TwistEventListener[effects.length][twists.length];
+		for (int e = 0; e < effects.length; e++) {
+			for (int d = 0; d < twists.length; d++) {
+				nextRoutes[e][d] = effects[e].getTwistEventListener(twists[d]);
+			}
+		}
+		routes = nextRoutes;
+	}
+	
+	// Coalesces requests, a device already queued is not queued again
+	private void requestService(int device) {
+		if (pendingService.compareAndSet(device, 0, 1)) {
+			bus.submit(device, twist -> service(device, twist));
+		}
+	}
+	
+	private void pollDevices() {
+		DigitalInput[] interruptPins = this.interruptPins;
+		for (int device = 0; device < interruptPins.length; device++) {
+			if (interruptPins[device] == null) {
+				requestService(device);
+			}
+		}
+	}
+	
+	// Also on reconnect, when the device has lost its settings and its LED colour
+	private void initialize(int device, Twist twist) {
+		// A service dropped while the device was away left its request flag set
+		pendingService.set(device, 0);
+		twist.setIntTimeout(INTERRUPT_TIMEOUT_MS);
+		twist.clearInterrupts();
+		if (writtenColors[device] != NO_COLOR) {
+			pendingColors.compareAndSet(device, NO_COLOR, writtenColors[device]);
+			writtenColors[device] = NO_COLOR;
+		}
+	}
+	
+	private void service(int device, Twist twist) {
+		DigitalInput interruptPin = interruptPins[device];
+		// Cleared before reading, so an edge arriving mid-read queues a fresh pass
+		pendingService.set(device, 0);
+		
+		int passes = 0;
+		do {
+			// One burst read and one clear per pass
+			TwistStatus status = twist.readStatus();
+			twist.clearInterrupts();
+			dispatch(device, status);
+			// An event landing between the read and the clear keeps INT low without a new edge
+		} while (interruptPin != null && interruptPin.isLow() && ++passes < MAX_SERVICE_PASSES);
+	}
+	
+	// One three-byte burst per changed colour. Input queued on the bus goes first, colours not
+	// reached, or not written because the device is away, stay pending for the next pass
+	private void writeColors() {
+		Twist[] twists = this.twists;
+		for (int device = 0; device < twists.length; device++) {
+			if (bus.hasQueuedTransactions()) {
+				return;
+			}
+			
+			int color = pendingColors.getAndSet(device, NO_COLOR);
+			if (color == NO_COLOR || color == writtenColors[device]) {
+				continue;
+			}
+			
+			if (bus.transact(device, twist -> twist.setColor(color >>> 16, (color >>> 8) & 0xFF, color & 0xFF))) {
+				writtenColors[device] = color;
+			} else {
+				pendingColors.compareAndSet(device, NO_COLOR, color);
+			}
+		}
+	}
+	
+	private void dispatch(int device, TwistStatus status) {
+		long now = System.nanoTime();
+		long previousReadNanos = lastReadNanos[device];
+		lastReadNanos[device] = now;
+		
+		boolean clicked = status.isClicked();
+		int encoderDelta = status.isMoved() ? status.getDiff() : 0;
+		if (!clicked && encoderDelta == 0) {
+			return;
+		}
+		
+		if (encoderDelta != 0) {
+			// When the firmware saw the last detent rather than when the bus got round to reading it,
+			// which was after the previous read, whatever the timer says
+			long movementNanos = Math.max(previousReadNanos,
+					now - TimeUnit.MILLISECONDS.toNanos(status.getSinceLastMovement()));
+			encoderDelta = EncoderAcceleration.accelerate(encoderDelta, movementNanos - lastMovementNanos[device]);
+			lastMovementNanos[device] = movementNanos;
+		}
+		
+		int effect = selectedEffect;
+		TwistEventListener[][] routes = this.routes;
+		if (effect < 0 || effect >= routes.length) {
+			return;
+		}
+		
+		TwistEventListener eventListener = routes[effect][device];
+		if (eventListener == null) {
+			return;
+		}
+		
+		if (encoderDelta != 0) {
+			hold(device, effect, encoderDelta, now);
+		}
+		if (clicked) {
+			// The turn belongs to the layer it was made on, the click moves a layered knob on
+			flush(device);
+			eventListener.onButtonPressed();
+			showColor(device, eventListener);
+		} else {
+			flushIfConsumed(device, now);
+		}
+	}
+	
+	private void showColor(int device, TwistEventListener eventListener) {
+		int color = eventListener == null ? TwistEventListener.NO_COLOR : eventListener.getColor();
+		if (color != TwistEventListener.NO_COLOR) {
+			setColor(device, color >>> 16, (color >>> 8) & 0xFF, color & 0xFF);
+		}
+	}
+	
+	private void hold(int device, int effect, int encoderDelta, long now) {
+		if (heldDeltas[device] == 0 || heldEffects[device] != effect) {
+			heldDeltas[device] = 0;
+			heldEffects[device] = effect;
+			heldSinceNanos[device] = now;
+		}
+		heldDeltas[device] += encoderDelta;
+	}
+	
+	private void flushHeldDeltas() {
+		long now = System.nanoTime();
+		for (int device = 0; device < MAX_TWISTS; device++) {
+			flushIfConsumed(device, now);
+		}
+	}
+	
+	// Sends the held delta once the audio thread has taken the effect's previous update, so each
+	// block sees at most one update per knob however fast it turns
+	private void flushIfConsumed(int device, long now) {
+		if (heldDeltas[device] == 0) {
+			return;
+		}
+		EffectBase[] effects = this.effects;
+		if (heldEffects[device] >= effects.length) {
+			heldDeltas[device] = 0;
+			return;
+		}
+		if (effects[heldEffects[device]].getPendingParameterUpdates() > 0
+				&& now - heldSinceNanos[device] < MAX_HOLD_NANOS) {
+			return;
+		}
+		flush(device);
+	}
+	
+	private void flush(int device) {
+		int encoderDelta = heldDeltas[device];
+		heldDeltas[device] = 0;
+		int effect = heldEffects[device];
+		TwistEventListener[][] routes = this.routes;
+		// Turned for an effect that is no longer selected, or one since replaced
+		if (encoderDelta == 0 || effect != selectedEffect || effect >= routes.length) {
+			return;
+		}
+		
+		TwistEventListener eventListener = routes[effect][device];
+		if (eventListener != null) {
+			eventListener.onEncoderTurned(encoderDelta);
+		}
+	}
+	
+}
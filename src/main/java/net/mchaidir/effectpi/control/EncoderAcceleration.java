@@ -0,0 +1,35 @@
+package net.mchaidir.effectpi.control;
+
+import java.util.concurrent.TimeUnit;
+
+// Velocity curve for encoder detents. Slow turns pass through one for one so fine adjustments
+// stay exact; past SLOW_RATE the multiplier rises linearly with the detent rate up to
+// MAX_FACTOR, so a fast flick sweeps a whole parameter range in a fraction of a turn.
+public final class EncoderAcceleration {
+	
+	// Detents per second
+	private static final float SLOW_RATE = 8f;
+	private static final float FAST_RATE = 60f;
+	private static final float MAX_FACTOR = 8f;
+	// A knob left alone longer than this starts again from rest
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+	
+	private EncoderAcceleration() {
+	}
+	
+	// detents turned over intervalNanos, the time since the previous movement was seen
+	public static int accelerate(int detents, long intervalNanos) {
+		if (detents == 0 || intervalNanos <= 0 || intervalNanos >= IDLE_NANOS) {
+			return detents;
+		}
+		
+		float rate = Math.abs(detents) * 1e9f / intervalNanos;
+		if (rate <= SLOW_RATE) {
+			return detents;
+		}
+		float position = Math.min(1f, (rate - SLOW_RATE) / (FAST_RATE - SLOW_RATE));
+		float factor = 1f + position * (MAX_FACTOR - 1f);
+		return Math.round(detents * factor);
+	}
+	
+}
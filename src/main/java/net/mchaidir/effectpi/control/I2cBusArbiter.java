@@ -0,0 +1,230 @@
+package net.mchaidir.effectpi.control;
+
+import com.sparkfun.qwiic.twist.Twist;
+import lombok.Getter;
+import net.mchaidir.effectpi.metrics.LatencyHistogram;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Sole owner of the Twists on one I2C bus and of the one thread that talks to them. Work arrives
+// as transactions queued per device; a device's queue is drained as one burst and bursts are
+// spaced out, so the bus never saturates. A device failing FAILURES_TO_DISCONNECT transactions
+// in a row is taken off the bus: its transactions are dropped and it is re-probed through
+// isConnected at exponentially growing intervals, so an unplugged Twist costs one probe every
+// few seconds rather than a timeout on every poll. A device that answers again is initialised
+// afresh before anything else runs on it.
+public class I2cBusArbiter implements AutoCloseable {
+	
+	public static final int MAX_DEVICES = 8;
+	
+	private static final long MIN_BURST_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(1000);
+	// Bounds one burst, so a device flooded with work cannot hold the bus from the others
+	private static final int MAX_BATCH = 16;
+	private static final int FAILURES_TO_DISCONNECT = 3;
+	private static final long MIN_BACKOFF_MS = 100;
+	private static final long MAX_BACKOFF_MS = 5000;
+	
+	private final ScheduledExecutorService busExecutor;
+	// Copy-on-write at setup
+	private volatile Device[] devices;
+	private long lastBurstNanos;
+	
+	// Every transaction and probe, recorded by the bus thread
+	@Getter
+	private final LatencyHistogram transactionHistogram;
+	@Getter
+	private volatile long failedTransactions;
+	@Getter
+	private volatile long droppedTransactions;
+	@Getter
+	private volatile long reconnects;
+	@Getter
+	private volatile int disconnectedDevices;
+	
+	public I2cBusArbiter(String threadName) {
+		this.busExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, threadName);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.devices = new Device[0];
+		this.transactionHistogram = new LatencyHistogram(0);
+	}
+	
+	// The initializer runs first on the bus, and again whenever the device comes back
+	public synchronized int addDevice(Twist twist, Consumer<Twist> initializer) {
+		int device = devices.length;
+		if (device == MAX_DEVICES) {
+			throw new IllegalStateException("At most " + MAX_DEVICES + " devices are supported");
+		}
+		
+		Device[] nextDevices = Arrays.copyOf(devices, device + 1);
+		nextDevices[device] = new Device(twist, initializer);
+		devices = nextDevices;
+		submit(device, initializer);
+		return device;
+	}
+	
+	// Any thread. Queued behind the device's earlier transactions, dropped if it is disconnected
+	public void submit(int device, Consumer<Twist> transaction) {
+		Device target = devices[device];
+		target.queue.add(transaction);
+		if (target.scheduled.compareAndSet(false, true)) {
+			busExecutor.execute(() -> drain(target));
+		}
+	}
+	
+	// Bus thread only, runs the transaction now. False if it failed or the device is disconnected
+	public boolean transact(int device, Consumer<Twist> transaction) {
+		Device target = devices[device];
+		if (!target.connected) {
+			return false;
+		}
+		awaitBusBudget();
+		return run(target, transaction);
+	}
+	
+	// Runs on the bus thread, between bursts
+	public void scheduleAtFixedRate(Runnable task, long periodMillis) {
+		busExecutor.scheduleAtFixedRate(task, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	public boolean hasQueuedTransactions() {
+		for (Device device : devices) {
+			if (device.scheduled.get()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	public boolean isConnected(int device) {
+		return devices[device].connected;
+	}
+	
+	@Override
+	public void close() {
+		busExecutor.shutdownNow();
+	}
+	
+	private void drain(Device device) {
+		// Cleared before draining, so a transaction added mid-burst schedules another
+		device.scheduled.set(false);
+		if (!device.connected) {
+			dropQueued(device);
+			return;
+		}
+		
+		awaitBusBudget();
+		for (int i = 0; i < MAX_BATCH; i++) {
+			Consumer<Twist> transaction = device.queue.poll();
+			if (transaction == null) {
+				return;
+			}
+			if (!run(device, transaction) && !device.connected) {
+				dropQueued(device);
+				return;
+			}
+		}
+		// The rest waits behind whatever the other devices queued meanwhile
+		if (!device.queue.isEmpty() && device.scheduled.compareAndSet(false, true)) {
+			busExecutor.execute(() -> drain(device));
+		}
+	}
+	
+	// The Twist swallows bus errors and counts them, a transaction failed if the count moved
+	private boolean run(Device device, Consumer<Twist> transaction) {
+		Twist twist = device.twist;
+		long failedTransfers = twist.getFailedTransfers();
+		long startNanos = System.nanoTime();
+		boolean failed;
+		try {
+			transaction.accept(twist);
+			failed = twist.getFailedTransfers() != failedTransfers;
+		} catch (RuntimeException e) {
+			failed = true;
+		}
+		transactionHistogram.record(System.nanoTime() - startNanos);
+		
+		if (!failed) {
+			device.consecutiveFailures = 0;
+			return true;
+		}
+		failedTransactions++;
+		if (++device.consecutiveFailures >= FAILURES_TO_DISCONNECT) {
+			disconnect(device);
+		}
+		return false;
+	}
+	
+	private void disconnect(Device device) {
+		device.connected = false;
+		device.backoffMillis = MIN_BACKOFF_MS;
+		disconnectedDevices++;
+		busExecutor.schedule(() -> probe(device), device.backoffMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	private void probe(Device device) {
+		awaitBusBudget();
+		long startNanos = System.nanoTime();
+		boolean connected = device.twist.isConnected();
+		transactionHistogram.record(System.nanoTime() - startNanos);
+		if (!connected) {
+			device.backoffMillis = Math.min(device.backoffMillis * 2, MAX_BACKOFF_MS);
+			busExecutor.schedule(() -> probe(device), device.backoffMillis, TimeUnit.MILLISECONDS);
+			return;
+		}
+		
+		device.consecutiveFailures = 0;
+		device.connected = true;
+		disconnectedDevices--;
+		reconnects++;
+		run(device, device.initializer);
+	}
+	
+	private void dropQueued(Device device) {
+		while (device.queue.poll() != null) {
+			droppedTransactions++;
+		}
+	}
+	
+	private void awaitBusBudget() {
+		long wait = lastBurstNanos + MIN_BURST_INTERVAL_NANOS - System.nanoTime();
+		if (wait > 0) {
+			LockSupport.parkNanos(wait);
+		}
+		lastBurstNanos = System.nanoTime();
+	}
+	
+	private static final class Device {
+		
+		final Twist twist;
+		final Consumer<Twist> initializer;
+		final Queue<Consumer<Twist>> queue;
+		// Set while a drain is queued on the bus thread
+		final AtomicBoolean scheduled;
+		volatile boolean connected;
+		// Bus thread only
+		int consecutiveFailures;
+		long backoffMillis;
+		
+		Device(Twist twist, Consumer<Twist> initializer) {
+			this.twist = twist;
+			this.initializer = initializer;
+			this.queue = new ConcurrentLinkedQueue<>();
+			this.scheduled = new AtomicBoolean();
+			this.connected = true;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,90 @@
+package net.mchaidir.effectpi.dsp;
+
+// Second-order IIR section in transposed direct form II. Coefficients come from the RBJ audio
+// EQ cookbook and are only touched by the setters, the per-sample work is five multiply-adds.
+public class Biquad {
+	
+	public static final double BUTTERWORTH_Q = Math.sqrt(0.5);
+	
+	// Keeps the design stable when a cutoff is pushed towards Nyquist
+	private static final double MAX_NYQUIST_FRACTION = 0.45;
+	
+	private float b0;
+	private float b1;
+	private float b2;
+	private float a1;
+	private float a2;
+	
+	private float z1;
+	private float z2;
+	
+	public Biquad() {
+		this.b0 = 1f;
+	}
+	
+	public void setLowPass(int sampleRate, double frequency, double q) {
+		double w0 = angularFrequency(sampleRate, frequency);
+		double cos = Math.cos(w0);
+		double alpha = Math.sin(w0) / (2.0 * q);
+		setNormalized((1.0 - cos) / 2.0, 1.0 - cos, (1.0 - cos) / 2.0,
+				1.0 + alpha, -2.0 * cos, 1.0 - alpha);
+	}
+	
+	public void setHighPass(int sampleRate, double frequency, double q) {
+		double w0 = angularFrequency(sampleRate, frequency);
+		double cos = Math.cos(w0);
+		double alpha = Math.sin(w0) / (2.0 * q);
+		setNormalized((1.0 + cos) / 2.0, -(1.0 + cos), (1.0 + cos) / 2.0,
+				1.0 + alpha, -2.0 * cos, 1.0 - alpha);
+	}
+	
+	// Constant 0 dB peak gain
+	public void setBandPass(int sampleRate, double frequency, double q) {
+		double w0 = angularFrequency(sampleRate, frequency);
+		double cos = Math.cos(w0);
+		double alpha = Math.sin(w0) / (2.0 * q);
+		setNormalized(alpha, 0.0, -alpha,
+				1.0 + alpha, -2.0 * cos, 1.0 - alpha);
+	}
+	
+	public void reset() {
+		z1 = 0f;
+		z2 = 0f;
+	}
+	
+	public float process(float input) {
+		float output = b0 * input + z1;
+		z1 = b1 * input - a1 * output + z2;
+		z2 = b2 * input - a2 * output;
+		return output;
+	}
+	
+	public void process(float[] buffer, int offset, int frames) {
+		// Work on locals so the state stays in registers for the whole block
+		float b0 = this.b0, b1 = this.b1, b2 = this.b2, a1 = this.a1, a2 = this.a2;
+		float z1 = this.z1, z2 = this.z2;
+		for (int i = offset; i < offset + frames; i++) {
+			float input = buffer[i];
+			float output = b0 * input + z1;
+			z1 = b1 * input - a1 * output + z2;
+			z2 = b2 * input - a2 * output;
+			buffer[i] = output;
+		}
+		this.z1 = z1;
+		this.z2 = z2;
+	}
+	
+	private static double angularFrequency(int sampleRate, double frequency) {
+		double limited = Math.min(frequency, sampleRate * MAX_NYQUIST_FRACTION);
+		return 2.0 * Math.PI * limited / sampleRate;
+	}
+	
+	private void setNormalized(double b0, double b1, double b2, double a0, double a1, double a2) {
+		this.b0 = (float) (b0 / a0);
+		this.b1 = (float) (b1 / a0);
+		this.b2 = (float) (b2 / a0);
+		this.a1 = (float) (a1 / a0);
+		this.a2 = (float) (a2 / a0);
+	}
+	
+}
@@ -0,0 +1,8 @@
+package net.mchaidir.effectpi.dsp;
+
+public enum ClippingCurve {
+	TANH,
+	HARD,
+	ASYMMETRIC,
+	FOLDBACK
+}
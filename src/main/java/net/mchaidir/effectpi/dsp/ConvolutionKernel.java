@@ -0,0 +1,48 @@
+package net.mchaidir.effectpi.dsp;
+
+import java.util.Arrays;
+
+// An impulse response cut into equal partitions, each zero padded to twice its length and
+// transformed once at load time. Immutable after construction, so any number of convolvers,
+// on any threads, can share one kernel.
+public class ConvolutionKernel {
+	
+	private final int partitionFrames;
+	private final int impulseFrames;
+	final float[][] spectraRe;
+	final float[][] spectraIm;
+	
+	public ConvolutionKernel(float[] impulse, int partitionFrames) {
+		if (impulse.length == 0) {
+			throw new IllegalArgumentException("Impulse response is empty");
+		}
+		this.partitionFrames = partitionFrames;
+		this.impulseFrames = impulse.length;
+		
+		Fft fft = new Fft(2 * partitionFrames);
+		int partitions = (impulse.length + partitionFrames - 1) / partitionFrames;
+		this.spectraRe = new float[partitions][fft.getBins()];
+		this.spectraIm = new float[partitions][fft.getBins()];
+		float[] padded = new float[fft.getSize()];
+		for (int p = 0; p < partitions; p++) {
+			int start = p * partitionFrames;
+			int length = Math.min(partitionFrames, impulse.length - start);
+			System.arraycopy(impulse, start, padded, 0, length);
+			Arrays.fill(padded, length, padded.length, 0f);
+			fft.forward(padded, spectraRe[p], spectraIm[p]);
+		}
+	}
+	
+	public int getPartitionFrames() {
+		return partitionFrames;
+	}
+	
+	public int getPartitions() {
+		return spectraRe.length;
+	}
+	
+	public int getImpulseFrames() {
+		return impulseFrames;
+	}
+	
+}
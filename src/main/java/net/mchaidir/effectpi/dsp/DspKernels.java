@@ -0,0 +1,28 @@
+package net.mchaidir.effectpi.dsp;
+
+// Elementwise block operations shared by the effects. Implemented once with the Vector API and
+// once as plain loops; Kernels picks one at startup. All of them tolerate their target being
+// one of their sources, as long as the two ranges start at the same index.
+interface DspKernels {
+	
+	// target = gain * source
+	void scale(float[] source, int sourceOffset, float[] target, int targetOffset, int frames, float gain);
+	
+	// target += gain * source
+	void accumulate(float[] source, int sourceOffset, float[] target, int targetOffset, int frames, float gain);
+	
+	// buffer *= gains, gains from index 0
+	void multiply(float[] buffer, int offset, float[] gains, int frames);
+	
+	// buffer clamped to +-threshold
+	void clip(float[] buffer, int offset, int frames, float threshold);
+	
+	// target = dry + wetGains * (wet - dry), gains from index 0
+	void blend(float[] dry, int dryOffset, float[] wet, int wetOffset, float[] wetGains,
+						 float[] target, int targetOffset, int frames);
+	
+	// sum += gain * x * h over complex bins held as separate real and imaginary arrays
+	void complexMultiplyAccumulate(float[] xRe, float[] xIm, float[] hRe, float[] hIm,
+																 float[] sumRe, float[] sumIm, int bins, float gain);
+	
+}
@@ -0,0 +1,178 @@
+package net.mchaidir.effectpi.dsp;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+// Feed-forward compressor. The envelope follower runs per sample, but the gain computer, the
+// only part needing log and pow, runs once per GAIN_BLOCK frames and the gain is ramped
+// linearly in between. RMS detection keeps a running sum over a window of squares and stays
+// in the power domain, so it never needs a square root. With look-ahead the audio is delayed
+// through a ring buffer while the detector sees it early. Everything is sized up front for
+// the maximum window and look-ahead, audio thread only.
+public class DynamicsProcessor {
+	
+	public static final double MAX_LOOK_AHEAD_MILLIS = 10.0;
+	public static final double MAX_RMS_WINDOW_MILLIS = 50.0;
+	
+	private static final int GAIN_BLOCK = 16;
+	// Envelope below this (about -180 dB) counts as silence
+	private static final float SILENCE = 1e-18f;
+	
+	private final int sampleRate;
+	
+	@Getter
+	private EnvelopeDetector detector;
+	private float attackCoefficient;
+	private float releaseCoefficient;
+	private float envelope;
+	
+	private final float[] squares;
+	private int windowFrames;
+	private int windowIndex;
+	private double windowSum;
+	
+	private float thresholdDb;
+	private float slope;
+	private float kneeDb;
+	private float makeupDb;
+	private float gain;
+	
+	private final float[] delayLine;
+	private final int delayMask;
+	private int delayIndex;
+	@Getter
+	private int lookAheadFrames;
+	
+	public DynamicsProcessor(int sampleRate) {
+		this.sampleRate = sampleRate;
+		this.detector = EnvelopeDetector.PEAK;
+		this.squares = new float[millisToFrames(MAX_RMS_WINDOW_MILLIS)];
+		this.windowFrames = 1;
+		this.delayLine = new float[Integer.highestOneBit(millisToFrames(MAX_LOOK_AHEAD_MILLIS)) << 1];
+		this.delayMask = delayLine.length - 1;
+		this.gain = 1f;
+		setThresholdDb(0f);
+		setRatio(1f);
+		setTimes(1.0, 100.0);
+	}
+	
+	public void setDetector(EnvelopeDetector detector, double rmsWindowMillis) {
+		int frames = Math.max(1, Math.min(millisToFrames(rmsWindowMillis), squares.length));
+		if (detector == this.detector && frames == windowFrames) {
+			return;
+		}
+		
+		this.detector = detector;
+		this.windowFrames = frames;
+		// The envelope changes domain between peak and power, restart it
+		reset();
+	}
+	
+	public void setTimes(double attackMillis, double releaseMillis) {
+		attackCoefficient = smoothingCoefficient(attackMillis);
+		releaseCoefficient = smoothingCoefficient(releaseMillis);
+	}
+	
+	public void setThresholdDb(float thresholdDb) {
+		this.thresholdDb = thresholdDb;
+	}
+	
+	// 1 leaves the signal alone, large ratios approach a limiter
+	public void setRatio(float ratio) {
+		this.slope = 1f - 1f / Math.max(1f, ratio);
+	}
+	
+	public void setKneeDb(float kneeDb) {
+		this.kneeDb = Math.max(0f, kneeDb);
+	}
+	
+	public void setMakeupDb(float makeupDb) {
+		this.makeupDb = makeupDb;
+	}
+	
+	public void setLookAheadMillis(double lookAheadMillis) {
+		this.lookAheadFrames = Math.max(0, Math.min(millisToFrames(lookAheadMillis), delayMask));
+	}
+	
+	public void reset() {
+		envelope = 0f;
+		windowSum = 0.0;
+		windowIndex = 0;
+		Arrays.fill(squares, 0f);
+		Arrays.fill(delayLine, 0f);
+	}
+	
+	public void process(float[] buffer, int offset, int frames) {
+		int end = offset + frames;
+		for (int blockStart = offset; blockStart < end; blockStart += GAIN_BLOCK) {
+			int blockEnd = Math.min(blockStart + GAIN_BLOCK, end);
+			
+			// Envelope over the undelayed input, the recursive part, scalar by nature
+			float envelope = this.envelope;
+			boolean rms = detector == EnvelopeDetector.RMS;
+			for (int i = blockStart; i < blockEnd; i++) {
+				float level = rms ? meanSquare(buffer[i]) : Math.abs(buffer[i]);
+				float coefficient = level > envelope ? attackCoefficient : releaseCoefficient;
+				envelope += coefficient * (level - envelope);
+			}
+			this.envelope = envelope;
+			
+			// Once per block, then ramp towards it
+			float targetGain = computeGain(envelope, rms);
+			float step = (targetGain - gain) / (blockEnd - blockStart);
+			float gain = this.gain;
+			for (int i = blockStart; i < blockEnd; i++) {
+				gain += step;
+				buffer[i] = delay(buffer[i]) * gain;
+			}
+			this.gain = targetGain;
+		}
+	}
+	
+	private float meanSquare(float sample) {
+		float square = sample * sample;
+		windowSum += square - squares[windowIndex];
+		squares[windowIndex] = square;
+		if (++windowIndex == windowFrames) {
+			windowIndex = 0;
+		}
+		// Rounding can leave the running sum a hair below zero
+		return (float) Math.max(0.0, windowSum / windowFrames);
+	}
+	
+	private float delay(float sample) {
+		delayLine[delayIndex] = sample;
+		float delayed = delayLine[(delayIndex - lookAheadFrames) & delayMask];
+		delayIndex = (delayIndex + 1) & delayMask;
+		return delayed;
+	}
+	
+	// Gain in the log domain with a quadratic soft knee centred on the threshold
+	private float computeGain(float envelope, boolean rms) {
+		float reductionDb = 0f;
+		if (envelope > SILENCE && slope > 0f) {
+			float levelDb = (float) ((rms ? 10.0 : 20.0) * Math.log10(envelope));
+			float overDb = levelDb - thresholdDb;
+			if (2f * overDb > kneeDb) {
+				reductionDb = slope * overDb;
+			} else if (2f * overDb > -kneeDb) {
+				float kneeOver = overDb + kneeDb / 2f;
+				reductionDb = slope * kneeOver * kneeOver / (2f * kneeDb);
+			}
+		}
+		return (float) Math.pow(10.0, (makeupDb - reductionDb) / 20.0);
+	}
+	
+	private float smoothingCoefficient(double millis) {
+		if (millis <= 0.0) {
+			return 1f;
+		}
+		return (float) (1.0 - Math.exp(-1000.0 / (millis * sampleRate)));
+	}
+	
+	private int millisToFrames(double millis) {
+		return (int) Math.round(millis * sampleRate / 1000.0);
+	}
+	
+}
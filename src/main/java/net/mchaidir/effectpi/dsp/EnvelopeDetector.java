@@ -0,0 +1,6 @@
+package net.mchaidir.effectpi.dsp;
+
+public enum EnvelopeDetector {
+	PEAK,
+	RMS
+}
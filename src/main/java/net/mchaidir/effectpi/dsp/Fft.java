@@ -0,0 +1,160 @@
+package net.mchaidir.effectpi.dsp;
+
+// Radix-2 FFT of real signals. A real frame of size points is packed into a complex frame of
+// half the size, even samples as real parts and odd as imaginary, transformed, then split into
+// the size / 2 + 1 non-redundant bins. Twiddles, the bit-reversal table and the scratch frame
+// are built once, transforms allocate nothing. Not thread safe, one instance per user.
+public class Fft {
+	
+	private final int size;
+	private final int half;
+	
+	// Twiddles of the half-size complex transform
+	private final float[] cos;
+	private final float[] sin;
+	// e^(-2 pi i k / size), used to split and merge the packed transform
+	private final float[] splitCos;
+	private final float[] splitSin;
+	private final int[] bitReversed;
+	
+	private final float[] re;
+	private final float[] im;
+	
+	public Fft(int size) {
+		if (size < 4 || Integer.bitCount(size) != 1) {
+			throw new IllegalArgumentException("FFT size must be a power of two of at least 4");
+		}
+		this.size = size;
+		this.half = size / 2;
+		
+		this.cos = new float[half / 2];
+		this.sin = new float[half / 2];
+		for (int i = 0; i < half / 2; i++) {
+			double angle = 2.0 * Math.PI * i / half;
+			cos[i] = (float) Math.cos(angle);
+			sin[i] = (float) -Math.sin(angle);
+		}
+		this.splitCos = new float[half];
+		this.splitSin = new float[half];
+		for (int k = 0; k < half; k++) {
+			double angle = 2.0 * Math.PI * k / size;
+			splitCos[k] = (float) Math.cos(angle);
+			splitSin[k] = (float) -Math.sin(angle);
+		}
+		
+		this.bitReversed = new int[half];
+		int bits = Integer.numberOfTrailingZeros(half);
+		for (int i = 0; i < half; i++) {
+			bitReversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+		}
+		
+		this.re = new float[half];
+		this.im = new float[half];
+	}
+	
+	public int getSize() {
+		return size;
+	}
+	
+	public int getBins() {
+		return half + 1;
+	}
+	
+	// size real samples in, getBins() complex bins out
+	public void forward(float[] input, float[] outRe, float[] outIm) {
+		for (int n = 0; n < half; n++) {
+			re[n] = input[2 * n];
+			im[n] = input[2 * n + 1];
+		}
+		transform(re, im);
+		
+		// Z[k] = E[k] + i O[k], so E and O are recovered from Z[k] and conj(Z[half - k])
+		outRe[0] = re[0] + im[0];
+		outIm[0] = 0f;
+		outRe[half] = re[0] - im[0];
+		outIm[half] = 0f;
+		for (int k = 1; k < half; k++) {
+			float zRe = re[k];
+			float zIm = im[k];
+			float mirrorRe = re[half - k];
+			float mirrorIm = -im[half - k];
+			
+			float evenRe = 0.5f * (zRe + mirrorRe);
+			float evenIm = 0.5f * (zIm + mirrorIm);
+			// (Z - conj(Z mirror)) / 2i
+			float oddRe = 0.5f * (zIm - mirrorIm);
+			float oddIm = -0.5f * (zRe - mirrorRe);
+			
+			float wRe = splitCos[k];
+			float wIm = splitSin[k];
+			outRe[k] = evenRe + wRe * oddRe - wIm * oddIm;
+			outIm[k] = evenIm + wRe * oddIm + wIm * oddRe;
+		}
+	}
+	
+	// getBins() complex bins in, size real samples out, scaled so inverse(forward(x)) == x
+	public void inverse(float[] inRe, float[] inIm, float[] output) {
+		for (int k = 0; k < half; k++) {
+			float xRe = inRe[k];
+			float xIm = inIm[k];
+			float mirrorRe = inRe[half - k];
+			float mirrorIm = -inIm[half - k];
+			
+			float evenRe = 0.5f * (xRe + mirrorRe);
+			float evenIm = 0.5f * (xIm + mirrorIm);
+			float diffRe = 0.5f * (xRe - mirrorRe);
+			float diffIm = 0.5f * (xIm - mirrorIm);
+			// Undo the split twiddle with its conjugate
+			float wRe = splitCos[k];
+			float wIm = -splitSin[k];
+			float oddRe = diffRe * wRe - diffIm * wIm;
+			float oddIm = diffRe * wIm + diffIm * wRe;
+			
+			// Z = E + i O, conjugated so the forward transform computes the inverse
+			re[k] = evenRe - oddIm;
+			im[k] = -(evenIm + oddRe);
+		}
+		transform(re, im);
+		
+		float scale = 1f / half;
+		for (int n = 0; n < half; n++) {
+			output[2 * n] = re[n] * scale;
+			output[2 * n + 1] = -im[n] * scale;
+		}
+	}
+	
+	// In-place iterative decimation-in-time transform of half points
+	private void transform(float[] re, float[] im) {
+		for (int i = 0; i < half; i++) {
+			int j = bitReversed[i];
+			if (j > i) {
+				float swap = re[i];
+				re[i] = re[j];
+				re[j] = swap;
+				swap = im[i];
+				im[i] = im[j];
+				im[j] = swap;
+			}
+		}
+		
+		for (int length = 2; length <= half; length <<= 1) {
+			int span = length / 2;
+			int stride = half / length;
+			for (int start = 0; start < half; start += length) {
+				for (int j = 0; j < span; j++) {
+					float wRe = cos[j * stride];
+					float wIm = sin[j * stride];
+					int a = start + j;
+					int b = a + span;
+					float tRe = re[b] * wRe - im[b] * wIm;
+					float tIm = re[b] * wIm + im[b] * wRe;
+					re[b] = re[a] - tRe;
+					im[b] = im[a] - tIm;
+					re[a] += tRe;
+					im[a] += tIm;
+				}
+			}
+		}
+	}
+	
+}
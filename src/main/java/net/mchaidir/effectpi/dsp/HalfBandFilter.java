@@ -0,0 +1,111 @@
+package net.mchaidir.effectpi.dsp;
+
+import java.util.Arrays;
+
+// One 2x stage of a polyphase half-band FIR. Every other tap of a half-band filter is zero and
+// the centre tap is 0.5, so each phase reduces to twelve multiply-adds on one side and a pure
+// delay on the other. Histories are stored twice so each window is a contiguous slice.
+class HalfBandFilter {
+	
+	private static final int TAP_COUNT = 12;
+	// Centre tap offset in the odd phase, (filter length - 3) / 4
+	private static final int CENTRE_DELAY = 5;
+	private static final double KAISER_BETA = 6.0;
+	
+	// Non-zero taps of the 23-tap prototype, normalised so they sum to 0.5
+	private static final float[] TAPS = designTaps();
+	
+	private final float[] interpolationHistory;
+	private int interpolationIndex;
+	
+	private final float[] evenHistory;
+	private int evenIndex;
+	private final float[] oddHistory;
+	private int oddIndex;
+	
+	HalfBandFilter() {
+		this.interpolationHistory = new float[2 * TAP_COUNT];
+		this.evenHistory = new float[2 * TAP_COUNT];
+		this.oddHistory = new float[2 * (CENTRE_DELAY + 1)];
+	}
+	
+	void reset() {
+		Arrays.fill(interpolationHistory, 0f);
+		Arrays.fill(evenHistory, 0f);
+		Arrays.fill(oddHistory, 0f);
+	}
+	
+	// Writes 2 * frames samples into out starting at 0
+	void interpolate(float[] in, int offset, int frames, float[] out) {
+		float[] history = interpolationHistory;
+		for (int i = 0; i < frames; i++) {
+			interpolationIndex = interpolationIndex == 0 ? TAP_COUNT - 1 : interpolationIndex - 1;
+			float input = in[offset + i];
+			history[interpolationIndex] = input;
+			history[interpolationIndex + TAP_COUNT] = input;
+			
+			float sum = 0f;
+			for (int k = 0; k < TAP_COUNT; k++) {
+				sum += TAPS[k] * history[interpolationIndex + k];
+			}
+			// Zero stuffing halves the energy, both phases are scaled back up by 2
+			out[2 * i] = 2f * sum;
+			out[2 * i + 1] = history[interpolationIndex + CENTRE_DELAY];
+		}
+	}
+	
+	// Reads 2 * frames samples from in starting at 0
+	void decimate(float[] in, int frames, float[] out, int offset) {
+		int oddLength = CENTRE_DELAY + 1;
+		for (int i = 0; i < frames; i++) {
+			evenIndex = evenIndex == 0 ? TAP_COUNT - 1 : evenIndex - 1;
+			float even = in[2 * i];
+			evenHistory[evenIndex] = even;
+			evenHistory[evenIndex + TAP_COUNT] = even;
+			
+			float sum = 0f;
+			for (int k = 0; k < TAP_COUNT; k++) {
+				sum += TAPS[k] * evenHistory[evenIndex + k];
+			}
+			out[offset + i] = sum + 0.5f * oddHistory[oddIndex + CENTRE_DELAY];
+			
+			oddIndex = oddIndex == 0 ? oddLength - 1 : oddIndex - 1;
+			float odd = in[2 * i + 1];
+			oddHistory[oddIndex] = odd;
+			oddHistory[oddIndex + oddLength] = odd;
+		}
+	}
+	
+	private static float[] designTaps() {
+		int length = 2 * TAP_COUNT - 1;
+		int centre = (length - 1) / 2;
+		double[] taps = new double[TAP_COUNT];
+		double sum = 0.0;
+		for (int k = 0; k < TAP_COUNT; k++) {
+			int n = 2 * k;
+			double x = (n - centre) / 2.0;
+			double sinc = Math.sin(Math.PI * x) / (Math.PI * x);
+			double ratio = (2.0 * n) / (length - 1) - 1.0;
+			double window = besselI0(KAISER_BETA * Math.sqrt(1.0 - ratio * ratio)) / besselI0(KAISER_BETA);
+			taps[k] = sinc * window;
+			sum += taps[k];
+		}
+		
+		float[] normalized = new float[TAP_COUNT];
+		for (int k = 0; k < TAP_COUNT; k++) {
+			normalized[k] = (float) (0.5 * taps[k] / sum);
+		}
+		return normalized;
+	}
+	
+	private static double besselI0(double x) {
+		double sum = 1.0;
+		double term = 1.0;
+		for (int k = 1; k < 32; k++) {
+			term *= (x / (2.0 * k)) * (x / (2.0 * k));
+			sum += term;
+		}
+		return sum;
+	}
+	
+}
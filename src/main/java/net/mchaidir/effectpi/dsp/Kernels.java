@@ -0,0 +1,58 @@
+package net.mchaidir.effectpi.dsp;
+
+// Entry point to the block kernels. The implementation is chosen once, when this class loads:
+// the Vector API one if the JVM was started with --add-modules jdk.incubator.vector and the CPU
+// has hardware vectors, the scalar one otherwise or when -Deffectpi.scalarKernels=true. The
+// field is static final, so the JIT binds every call straight to the chosen implementation.
+public final class Kernels {
+	
+	private static final DspKernels IMPLEMENTATION = select();
+	
+	private Kernels() {
+	}
+	
+	public static String getImplementation() {
+		return IMPLEMENTATION.getClass().getSimpleName();
+	}
+	
+	public static void scale(float[] source, int sourceOffset, float[] target, int targetOffset, int frames, float gain) {
+		IMPLEMENTATION.scale(source, sourceOffset, target, targetOffset, frames, gain);
+	}
+	
+	public static void accumulate(float[] source, int sourceOffset, float[] target, int targetOffset, int frames, float gain) {
+		IMPLEMENTATION.accumulate(source, sourceOffset, target, targetOffset, frames, gain);
+	}
+	
+	public static void multiply(float[] buffer, int offset, float[] gains, int frames) {
+		IMPLEMENTATION.multiply(buffer, offset, gains, frames);
+	}
+	
+	public static void clip(float[] buffer, int offset, int frames, float threshold) {
+		IMPLEMENTATION.clip(buffer, offset, frames, threshold);
+	}
+	
+	public static void blend(float[] dry, int dryOffset, float[] wet, int wetOffset, float[] wetGains,
+													 float[] target, int targetOffset, int frames) {
+		IMPLEMENTATION.blend(dry, dryOffset, wet, wetOffset, wetGains, target, targetOffset, frames);
+	}
+	
+	public static void complexMultiplyAccumulate(float[] xRe, float[] xIm, float[] hRe, float[] hIm,
+																							 float[] sumRe, float[] sumIm, int bins, float gain) {
+		IMPLEMENTATION.complexMultiplyAccumulate(xRe, xIm, hRe, hIm, sumRe, sumIm, bins, gain);
+	}
+	
+	private static DspKernels select() {
+		if (Boolean.getBoolean("effectpi.scalarKernels")) {
+			return new ScalarKernels();
+		}
+		try {
+			// By name, so a JVM without the module never links against it
+			return (DspKernels) Class.forName("net.mchaidir.effectpi.dsp.VectorKernels")
+					.getDeclaredConstructor()
+					.newInstance();
+		} catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+			return new ScalarKernels();
+		}
+	}
+	
+}
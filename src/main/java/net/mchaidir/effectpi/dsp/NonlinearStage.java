@@ -0,0 +1,8 @@
+package net.mchaidir.effectpi.dsp;
+
+@FunctionalInterface
+public interface NonlinearStage {
+	
+	void process(float[] buffer, int offset, int frames);
+	
+}
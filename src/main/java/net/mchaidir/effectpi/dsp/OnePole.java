@@ -0,0 +1,35 @@
+package net.mchaidir.effectpi.dsp;
+
+// First-order low-pass, one multiply-add per sample. Gentle enough to darken a feedback loop
+// without the resonance a biquad could add.
+public class OnePole {
+	
+	private static final double MAX_NYQUIST_FRACTION = 0.45;
+	
+	private float coefficient;
+	private float state;
+	
+	public OnePole() {
+		this.coefficient = 1f;
+	}
+	
+	public void setLowPass(int sampleRate, double frequency) {
+		double clamped = Math.min(frequency, sampleRate * MAX_NYQUIST_FRACTION);
+		coefficient = (float) (1.0 - Math.exp(-2.0 * Math.PI * clamped / sampleRate));
+	}
+	
+	public void reset() {
+		state = 0f;
+	}
+	
+	// The last output, which is what the filter subtracts when used as a high-pass
+	public float getState() {
+		return state;
+	}
+	
+	public float process(float input) {
+		state += coefficient * (input - state);
+		return state;
+	}
+	
+}
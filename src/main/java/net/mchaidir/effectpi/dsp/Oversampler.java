@@ -0,0 +1,80 @@
+package net.mchaidir.effectpi.dsp;
+
+import lombok.Getter;
+
+// Runs a nonlinear stage at 2x, 4x or 8x the base rate through cascaded half-band stages, so
+// only the section that creates harmonics pays for the higher rate. All buffers are sized for
+// 8x up front, so switching the factor never allocates.
+public class Oversampler {
+	
+	private static final int MAX_STAGES = OversamplingFactor.X8.getStages();
+	
+	private final int maxFrames;
+	private final HalfBandFilter[] upStages;
+	private final HalfBandFilter[] downStages;
+	// stageBuffers[s] holds the signal at 2^(s + 1) times the base rate
+	private final float[][] stageBuffers;
+	
+	@Getter
+	private OversamplingFactor factor;
+	
+	public Oversampler(OversamplingFactor factor, int maxFrames) {
+		this.maxFrames = maxFrames;
+		this.upStages = new HalfBandFilter[MAX_STAGES];
+		this.downStages = new HalfBandFilter[MAX_STAGES];
+		this.stageBuffers = new float[MAX_STAGES][];
+		for (int s = 0; s < MAX_STAGES; s++) {
+			upStages[s] = new HalfBandFilter();
+			downStages[s] = new HalfBandFilter();
+			stageBuffers[s] = new float[maxFrames << (s + 1)];
+		}
+		this.factor = factor;
+	}
+	
+	public void setFactor(OversamplingFactor factor) {
+		if (factor == this.factor) {
+			return;
+		}
+		
+		// Stages that were idle hold stale history, start them from silence
+		for (int s = 0; s < MAX_STAGES; s++) {
+			upStages[s].reset();
+			downStages[s].reset();
+		}
+		this.factor = factor;
+	}
+	
+	public void process(float[] buffer, int offset, int frames, NonlinearStage stage) {
+		if (frames > maxFrames) {
+			throw new IllegalArgumentException("frames must not exceed " + maxFrames);
+		}
+		
+		int stages = factor.getStages();
+		if (stages == 0) {
+			stage.process(buffer, offset, frames);
+			return;
+		}
+		
+		float[] source = buffer;
+		int sourceOffset = offset;
+		int sourceFrames = frames;
+		for (int s = 0; s < stages; s++) {
+			upStages[s].interpolate(source, sourceOffset, sourceFrames, stageBuffers[s]);
+			source = stageBuffers[s];
+			sourceOffset = 0;
+			sourceFrames *= 2;
+		}
+		
+		stage.process(source, 0, sourceFrames);
+		
+		for (int s = stages - 1; s >= 0; s--) {
+			sourceFrames /= 2;
+			if (s == 0) {
+				downStages[s].decimate(stageBuffers[s], sourceFrames, buffer, offset);
+			} else {
+				downStages[s].decimate(stageBuffers[s], sourceFrames, stageBuffers[s - 1], 0);
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,22 @@
+package net.mchaidir.effectpi.dsp;
+
+import lombok.Getter;
+
+@Getter
+public enum OversamplingFactor {
+	X1(0),
+	X2(1),
+	X4(2),
+	X8(3);
+	
+	// Number of cascaded 2x half-band stages
+	private final int stages;
+	
+	OversamplingFactor(int stages) {
+		this.stages = stages;
+	}
+	
+	public int getRatio() {
+		return 1 << stages;
+	}
+}
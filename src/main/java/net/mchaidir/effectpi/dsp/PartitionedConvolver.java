@@ -0,0 +1,169 @@
+package net.mchaidir.effectpi.dsp;
+
+import java.util.Arrays;
+
+// Uniformly partitioned overlap-save convolution. Input is gathered into partitions; each full
+// partition is transformed together with the one before it, pushed onto a frequency-domain
+// delay line, multiplied against the kernel's partition spectra and summed, so a whole
+// partition of output costs two transforms and one multiply-add per bin and partition, however
+// long the impulse. Output lags input by exactly one partition. Audio thread only.
+public class PartitionedConvolver {
+	
+	// Partitions dropped or restored by setMaxPartitions fade over this many partitions
+	private static final int FADE_PARTITIONS = 16;
+	
+	private final ConvolutionKernel kernel;
+	private final Fft fft;
+	private final int partitionFrames;
+	private final int bins;
+	
+	private final float[] inputPartition;
+	private final float[] outputPartition;
+	private int fill;
+	
+	// Previous and current partition, the transform's input
+	private final float[] window;
+	private final float[] result;
+	
+	// Spectra of past input windows, newest at head
+	private final float[][] historyRe;
+	private final float[][] historyIm;
+	private int head;
+	
+	private final float[] sumRe;
+	private final float[] sumIm;
+	
+	// Partitions summed, those from fadeStart on carry fadeGain while it moves towards its target
+	private int activePartitions;
+	private int targetPartitions;
+	private int fadeStart;
+	private float fadeGain;
+	private float fadeStep;
+	
+	public PartitionedConvolver(ConvolutionKernel kernel) {
+		this.kernel = kernel;
+		this.partitionFrames = kernel.getPartitionFrames();
+		this.fft = new Fft(2 * partitionFrames);
+		this.bins = fft.getBins();
+		
+		this.inputPartition = new float[partitionFrames];
+		this.outputPartition = new float[partitionFrames];
+		this.window = new float[fft.getSize()];
+		this.result = new float[fft.getSize()];
+		this.historyRe = new float[kernel.getPartitions()][bins];
+		this.historyIm = new float[kernel.getPartitions()][bins];
+		this.sumRe = new float[bins];
+		this.sumIm = new float[bins];
+		
+		this.activePartitions = kernel.getPartitions();
+		this.targetPartitions = activePartitions;
+		this.fadeStart = activePartitions;
+		this.fadeGain = 1f;
+	}
+	
+	public ConvolutionKernel getKernel() {
+		return kernel;
+	}
+	
+	public int getLatencyFrames() {
+		return partitionFrames;
+	}
+	
+	// Truncates the impulse to its first partitions to save time, or restores it. The spectra of
+	// past input are kept for every partition, so the tail can come back at any time; either way
+	// it is faded rather than switched.
+	public void setMaxPartitions(int maxPartitions) {
+		targetPartitions = Math.max(1, Math.min(maxPartitions, historyRe.length));
+		// A change arriving mid-fade is picked up once that fade is done
+		if (fadeStep == 0f) {
+			startFade();
+		}
+	}
+	
+	public void reset() {
+		fill = 0;
+		head = 0;
+		Arrays.fill(inputPartition, 0f);
+		Arrays.fill(outputPartition, 0f);
+		Arrays.fill(window, 0f);
+		for (int p = 0; p < historyRe.length; p++) {
+			Arrays.fill(historyRe[p], 0f);
+			Arrays.fill(historyIm[p], 0f);
+		}
+	}
+	
+	// In place, any number of frames per call
+	public void process(float[] buffer, int offset, int frames) {
+		int done = 0;
+		while (done < frames) {
+			int count = Math.min(frames - done, partitionFrames - fill);
+			System.arraycopy(buffer, offset + done, inputPartition, fill, count);
+			System.arraycopy(outputPartition, fill, buffer, offset + done, count);
+			fill += count;
+			done += count;
+			
+			if (fill == partitionFrames) {
+				convolvePartition();
+				fill = 0;
+			}
+		}
+	}
+	
+	private void convolvePartition() {
+		System.arraycopy(window, partitionFrames, window, 0, partitionFrames);
+		System.arraycopy(inputPartition, 0, window, partitionFrames, partitionFrames);
+		
+		int partitions = historyRe.length;
+		head = head == 0 ? partitions - 1 : head - 1;
+		fft.forward(window, historyRe[head], historyIm[head]);
+		
+		Arrays.fill(sumRe, 0f);
+		Arrays.fill(sumIm, 0f);
+		// Partition p of the impulse meets the input from p partitions ago
+		for (int p = 0; p < activePartitions; p++) {
+			int slot = head + p < partitions ? head + p : head + p - partitions;
+			float[] xRe = historyRe[slot];
+			float[] xIm = historyIm[slot];
+			float[] hRe = kernel.spectraRe[p];
+			float[] hIm = kernel.spectraIm[p];
+			Kernels.complexMultiplyAccumulate(xRe, xIm, hRe, hIm, sumRe, sumIm, bins, p < fadeStart ? 1f : fadeGain);
+		}
+		advanceFade();
+		
+		fft.inverse(sumRe, sumIm, result);
+		// The first half wrapped around the circular convolution, the second half is linear
+		System.arraycopy(result, partitionFrames, outputPartition, 0, partitionFrames);
+	}
+	
+	private void startFade() {
+		if (targetPartitions < activePartitions) {
+			fadeStart = targetPartitions;
+			fadeGain = 1f;
+			fadeStep = -1f / FADE_PARTITIONS;
+		} else if (targetPartitions > activePartitions) {
+			fadeStart = activePartitions;
+			activePartitions = targetPartitions;
+			fadeGain = 0f;
+			fadeStep = 1f / FADE_PARTITIONS;
+		}
+	}
+	
+	private void advanceFade() {
+		if (fadeStep == 0f) {
+			return;
+		}
+		
+		fadeGain += fadeStep;
+		if (fadeStep < 0f && fadeGain <= 0f) {
+			// The tail is silent, stop paying for it
+			activePartitions = fadeStart;
+		} else if (fadeStep < 0f || fadeGain < 1f) {
+			return;
+		}
+		fadeGain = 1f;
+		fadeStep = 0f;
+		fadeStart = activePartitions;
+		startFade();
+	}
+	
+}
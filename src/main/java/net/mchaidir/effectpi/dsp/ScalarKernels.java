@@ -0,0 +1,53 @@
+package net.mchaidir.effectpi.dsp;
+
+// Plain loops, for JVMs started without jdk.incubator.vector. C2 auto-vectorises the simpler
+// ones anyway, so this is slower mainly on the complex multiply and the blends.
+class ScalarKernels implements DspKernels {
+	
+	@Override
+	public void scale(float[] source, int sourceOffset, float[] target, int targetOffset, int frames, float gain) {
+		for (int i = 0; i < frames; i++) {
+			target[targetOffset + i] = gain * source[sourceOffset + i];
+		}
+	}
+	
+	@Override
+	public void accumulate(float[] source, int sourceOffset, float[] target, int targetOffset, int frames, float gain) {
+		for (int i = 0; i < frames; i++) {
+			target[targetOffset + i] += gain * source[sourceOffset + i];
+		}
+	}
+	
+	@Override
+	public void multiply(float[] buffer, int offset, float[] gains, int frames) {
+		for (int i = 0; i < frames; i++) {
+			buffer[offset + i] *= gains[i];
+		}
+	}
+	
+	@Override
+	public void clip(float[] buffer, int offset, int frames, float threshold) {
+		for (int i = offset; i < offset + frames; i++) {
+			buffer[i] = Math.max(-threshold, Math.min(buffer[i], threshold));
+		}
+	}
+	
+	@Override
+	public void blend(float[] dry, int dryOffset, float[] wet, int wetOffset, float[] wetGains,
+										float[] target, int targetOffset, int frames) {
+		for (int i = 0; i < frames; i++) {
+			float drySample = dry[dryOffset + i];
+			target[targetOffset + i] = drySample + wetGains[i] * (wet[wetOffset + i] - drySample);
+		}
+	}
+	
+	@Override
+	public void complexMultiplyAccumulate(float[] xRe, float[] xIm, float[] hRe, float[] hIm,
+																				float[] sumRe, float[] sumIm, int bins, float gain) {
+		for (int k = 0; k < bins; k++) {
+			sumRe[k] += gain * (xRe[k] * hRe[k] - xIm[k] * hIm[k]);
+			sumIm[k] += gain * (xRe[k] * hIm[k] + xIm[k] * hRe[k]);
+		}
+	}
+	
+}
@@ -0,0 +1,103 @@
+package net.mchaidir.effectpi.dsp;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+// De-zippers a control value by ramping it to its target over a fixed time. Exponential ramps are
+// evaluated once per block and interpolated linearly inside it, so every fill is a flat loop
+// with no carried dependency that the JIT can vectorise. Audio thread only.
+public class SmoothedValue {
+	
+	// An exponential ramp is considered settled at -60 dB, where it snaps onto the target
+	private static final double SETTLED_RATIO = 0.001;
+	
+	private final SmoothingType type;
+	private final int sampleRate;
+	
+	private int rampFrames;
+	private double decayPerFrame;
+	
+	@Getter
+	private float current;
+	@Getter
+	private float target;
+	private int remainingFrames;
+	
+	public SmoothedValue(SmoothingType type, int sampleRate, double rampMillis, float initialValue) {
+		this.type = type;
+		this.sampleRate = sampleRate;
+		this.current = initialValue;
+		this.target = initialValue;
+		setRampMillis(rampMillis);
+	}
+	
+	public void setRampMillis(double rampMillis) {
+		this.rampFrames = Math.max(1, (int) Math.round(rampMillis * sampleRate / 1000.0));
+		this.decayPerFrame = Math.pow(SETTLED_RATIO, 1.0 / rampFrames);
+	}
+	
+	public void setTarget(float newTarget) {
+		if (newTarget == target) {
+			return;
+		}
+		
+		target = newTarget;
+		remainingFrames = rampFrames;
+	}
+	
+	public void reset(float value) {
+		current = value;
+		target = value;
+		remainingFrames = 0;
+	}
+	
+	public boolean isSmoothing() {
+		return remainingFrames > 0;
+	}
+	
+	// Writes the per-sample values of the next frames into ramp
+	public void fill(float[] ramp, int frames) {
+		if (remainingFrames == 0) {
+			Arrays.fill(ramp, 0, frames, current);
+			return;
+		}
+		
+		int steps = Math.min(frames, remainingFrames);
+		float start = current;
+		float step = (valueAfter(steps) - start) / steps;
+		for (int i = 0; i < steps; i++) {
+			ramp[i] = start + step * (i + 1);
+		}
+		
+		advanceBy(steps);
+		if (steps < frames) {
+			Arrays.fill(ramp, steps, frames, current);
+		}
+	}
+	
+	// Steps the ramp for block-rate parameters such as filter coefficients
+	public float advance(int frames) {
+		if (remainingFrames > 0) {
+			advanceBy(Math.min(frames, remainingFrames));
+		}
+		return current;
+	}
+	
+	private void advanceBy(int steps) {
+		current = valueAfter(steps);
+		remainingFrames -= steps;
+	}
+	
+	private float valueAfter(int steps) {
+		if (steps >= remainingFrames) {
+			return target;
+		}
+		
+		if (type == SmoothingType.LINEAR) {
+			return current + (target - current) * steps / remainingFrames;
+		}
+		return target + (current - target) * (float) Math.pow(decayPerFrame, steps);
+	}
+	
+}
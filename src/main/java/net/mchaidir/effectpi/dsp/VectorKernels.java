@@ -0,0 +1,120 @@
+package net.mchaidir.effectpi.dsp;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// The kernels on the widest float vectors the CPU has: four lanes of NEON on the Pi, eight of AVX2
+// on a workstation. Each loop runs whole vectors up to loopBound and finishes the tail scalar.
+// Only loaded when the jdk.incubator.vector module is present, see Kernels.
+class VectorKernels implements DspKernels {
+	
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+	// Below this the API falls back to emulation, slower than the scalar loops
+	private static final int MIN_LANES = 4;
+	
+	VectorKernels() {
+		if (SPECIES.length() < MIN_LANES) {
+			throw new UnsupportedOperationException("No hardware vectors of " + MIN_LANES + " floats");
+		}
+	}
+	
+	@Override
+	public void scale(float[] source, int sourceOffset, float[] target, int targetOffset, int frames, float gain) {
+		int bound = SPECIES.loopBound(frames);
+		int i = 0;
+		for (; i < bound; i += SPECIES.length()) {
+			FloatVector.fromArray(SPECIES, source, sourceOffset + i)
+					.mul(gain)
+					.intoArray(target, targetOffset + i);
+		}
+		for (; i < frames; i++) {
+			target[targetOffset + i] = gain * source[sourceOffset + i];
+		}
+	}
+	
+	@Override
+	public void accumulate(float[] source, int sourceOffset, float[] target, int targetOffset, int frames, float gain) {
+		FloatVector gains = FloatVector.broadcast(SPECIES, gain);
+		int bound = SPECIES.loopBound(frames);
+		int i = 0;
+		for (; i < bound; i += SPECIES.length()) {
+			FloatVector.fromArray(SPECIES, source, sourceOffset + i)
+					.fma(gains, FloatVector.fromArray(SPECIES, target, targetOffset + i))
+					.intoArray(target, targetOffset + i);
+		}
+		for (; i < frames; i++) {
+			target[targetOffset + i] += gain * source[sourceOffset + i];
+		}
+	}
+	
+	@Override
+	public void multiply(float[] buffer, int offset, float[] gains, int frames) {
+		int bound = SPECIES.loopBound(frames);
+		int i = 0;
+		for (; i < bound; i += SPECIES.length()) {
+			FloatVector.fromArray(SPECIES, buffer, offset + i)
+					.mul(FloatVector.fromArray(SPECIES, gains, i))
+					.intoArray(buffer, offset + i);
+		}
+		for (; i < frames; i++) {
+			buffer[offset + i] *= gains[i];
+		}
+	}
+	
+	@Override
+	public void clip(float[] buffer, int offset, int frames, float threshold) {
+		int bound = SPECIES.loopBound(frames);
+		int i = 0;
+		for (; i < bound; i += SPECIES.length()) {
+			FloatVector.fromArray(SPECIES, buffer, offset + i)
+					.lanewise(VectorOperators.MIN, threshold)
+					.lanewise(VectorOperators.MAX, -threshold)
+					.intoArray(buffer, offset + i);
+		}
+		for (; i < frames; i++) {
+			buffer[offset + i] = Math.max(-threshold, Math.min(buffer[offset + i], threshold));
+		}
+	}
+	
+	@Override
+	public void blend(float[] dry, int dryOffset, float[] wet, int wetOffset, float[] wetGains,
+										float[] target, int targetOffset, int frames) {
+		int bound = SPECIES.loopBound(frames);
+		int i = 0;
+		for (; i < bound; i += SPECIES.length()) {
+			FloatVector drySamples = FloatVector.fromArray(SPECIES, dry, dryOffset + i);
+			FloatVector.fromArray(SPECIES, wet, wetOffset + i)
+					.sub(drySamples)
+					.fma(FloatVector.fromArray(SPECIES, wetGains, i), drySamples)
+					.intoArray(target, targetOffset + i);
+		}
+		for (; i < frames; i++) {
+			float drySample = dry[dryOffset + i];
+			target[targetOffset + i] = drySample + wetGains[i] * (wet[wetOffset + i] - drySample);
+		}
+	}
+	
+	@Override
+	public void complexMultiplyAccumulate(float[] xRe, float[] xIm, float[] hRe, float[] hIm,
+																				float[] sumRe, float[] sumIm, int bins, float gain) {
+		FloatVector gains = FloatVector.broadcast(SPECIES, gain);
+		int bound = SPECIES.loopBound(bins);
+		int k = 0;
+		for (; k < bound; k += SPECIES.length()) {
+			FloatVector ar = FloatVector.fromArray(SPECIES, xRe, k);
+			FloatVector ai = FloatVector.fromArray(SPECIES, xIm, k);
+			FloatVector br = FloatVector.fromArray(SPECIES, hRe, k);
+			FloatVector bi = FloatVector.fromArray(SPECIES, hIm, k);
+			FloatVector re = ar.mul(br).sub(ai.mul(bi));
+			FloatVector im = ar.mul(bi).add(ai.mul(br));
+			re.fma(gains, FloatVector.fromArray(SPECIES, sumRe, k)).intoArray(sumRe, k);
+			im.fma(gains, FloatVector.fromArray(SPECIES, sumIm, k)).intoArray(sumIm, k);
+		}
+		for (; k < bins; k++) {
+			sumRe[k] += gain * (xRe[k] * hRe[k] - xIm[k] * hIm[k]);
+			sumIm[k] += gain * (xRe[k] * hIm[k] + xIm[k] * hRe[k]);
+		}
+	}
+	
+}
@@ -0,0 +1,102 @@
+package net.mchaidir.effectpi.dsp;
+
+import lombok.Getter;
+
+// Static clipping curves over a block. Curves are defined on the input normalised to the
+// threshold, so a threshold change is a pre/post scale and never invalidates anything. The
+// smooth curves come from interpolated tables built once per class, hard clipping and
+// foldback are cheap enough to compute directly.
+public class Waveshaper {
+	
+	private static final int TABLE_SIZE = 4096;
+	// tanh is within 1e-6 of its asymptote past 8, inputs beyond that read the edge entries
+	private static final float TABLE_RANGE = 8f;
+	private static final float TABLE_SCALE = TABLE_SIZE / (2f * TABLE_RANGE);
+	
+	private static final double ASYMMETRIC_BIAS = 0.3;
+	
+	private static final float[] TANH_TABLE = buildTable(ClippingCurve.TANH);
+	private static final float[] ASYMMETRIC_TABLE = buildTable(ClippingCurve.ASYMMETRIC);
+	
+	@Getter
+	private ClippingCurve curve;
+	private float[] table;
+	
+	public Waveshaper(ClippingCurve curve) {
+		setCurve(curve);
+	}
+	
+	public void setCurve(ClippingCurve curve) {
+		this.curve = curve;
+		this.table = curve == ClippingCurve.ASYMMETRIC ? ASYMMETRIC_TABLE : TANH_TABLE;
+	}
+	
+	public float shape(float input, float threshold) {
+		float normalized = input / threshold;
+		switch (curve) {
+			case HARD:
+				return Math.max(-threshold, Math.min(input, threshold));
+			case FOLDBACK:
+				return threshold * fold(normalized);
+			default:
+				return threshold * lookup(table, normalized);
+		}
+	}
+	
+	// The curve is picked once per block so each inner loop is branch free
+	public void process(float[] buffer, int offset, int frames, float threshold) {
+		int end = offset + frames;
+		float inverseThreshold = 1f / threshold;
+		switch (curve) {
+			case HARD:
+				Kernels.clip(buffer, offset, frames, threshold);
+				break;
+			case FOLDBACK:
+				for (int i = offset; i < end; i++) {
+					buffer[i] = threshold * fold(buffer[i] * inverseThreshold);
+				}
+				break;
+			default:
+				float[] table = this.table;
+				for (int i = offset; i < end; i++) {
+					buffer[i] = threshold * lookup(table, buffer[i] * inverseThreshold);
+				}
+				break;
+		}
+	}
+	
+	private static float lookup(float[] table, float normalized) {
+		float position = (normalized + TABLE_RANGE) * TABLE_SCALE;
+		position = Math.max(0f, Math.min(position, TABLE_SIZE));
+		int index = (int) position;
+		float fraction = position - index;
+		float base = table[index];
+		return base + fraction * (table[index + 1] - base);
+	}
+	
+	// Reflects everything past +-1 back into range, a triangle wave with period 4
+	private static float fold(float normalized) {
+		float phase = normalized + 1f;
+		phase -= 4f * (float) Math.floor(phase * 0.25f);
+		return 1f - Math.abs(phase - 2f);
+	}
+	
+	private static float[] buildTable(ClippingCurve curve) {
+		// One guard entry past the end keeps the interpolation in bounds at the top edge
+		float[] table = new float[TABLE_SIZE + 2];
+		for (int i = 0; i <= TABLE_SIZE; i++) {
+			double normalized = i / (double) TABLE_SCALE - TABLE_RANGE;
+			table[i] = (float) evaluate(curve, normalized);
+		}
+		table[TABLE_SIZE + 1] = table[TABLE_SIZE];
+		return table;
+	}
+	
+	private static double evaluate(ClippingCurve curve, double normalized) {
+		if (curve == ClippingCurve.ASYMMETRIC) {
+			return Math.tanh(normalized + ASYMMETRIC_BIAS) - Math.tanh(ASYMMETRIC_BIAS);
+		}
+		return Math.tanh(normalized);
+	}
+	
+}
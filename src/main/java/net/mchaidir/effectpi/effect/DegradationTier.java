@@ -0,0 +1,25 @@
+package net.mchaidir.effectpi.effect;
+
+// How much quality EffectChain is giving up to stay inside its block budget, each tier keeping
+// the savings of the ones before it
+public enum DegradationTier {
+	FULL,
+	// Nonlinear stages run at no more than 2x
+	REDUCED_OVERSAMPLING,
+	// Convolutions keep only the head of their impulse
+	SHORT_IMPULSES,
+	// Effects not marked essential are bypassed
+	ESSENTIAL_ONLY;
+	
+	public boolean isAtLeast(DegradationTier tier) {
+		return ordinal() >= tier.ordinal();
+	}
+	
+	DegradationTier lower() {
+		return this == ESSENTIAL_ONLY ? this : values()[ordinal() + 1];
+	}
+	
+	DegradationTier higher() {
+		return this == FULL ? this : values()[ordinal() - 1];
+	}
+}
@@ -1,53 +1,87 @@
 package net.mchaidir.effectpi.effect;
 
 import com.sparkfun.qwiic.twist.Twist;
+import lombok.Getter;
+import lombok.Setter;
 import net.mchaidir.effectpi.common.TwistEventListener;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 public abstract class EffectBase {
 	
-	private boolean enabled;
-	boolean selected;
+	// Block samples are normalised floats, the per-sample path works on signed 16-bit values
+	public static final float SAMPLE_SCALE = 32767f;
 	
-	private static final int POLLING_INTERVAL_MS = 100;
+	@Getter
+	@Setter
+	private volatile boolean enabled;
+	@Getter
+	@Setter
+	private volatile boolean selected;
+	// Non-essential effects are the first thing EffectChain bypasses under sustained overload
+	@Getter
+	@Setter
+	private volatile boolean essential;
 	
+	// Input is serviced centrally by ControlSurface, effects only declare their bindings
 	private final Map<Twist, TwistEventListener> twistMap;
 	
-	public EffectBase(ScheduledExecutorService scheduledExecutorService) {
+	public EffectBase() {
 		this.twistMap = new HashMap<>();
-		
-		scheduledExecutorService.scheduleAtFixedRate(
-				this::pollEvent,
-				0,
-				POLLING_INTERVAL_MS,
-				TimeUnit.MILLISECONDS);
-	}
-	
-	void pollEvent() {
-		if (selected) {
-			for (Map.Entry<Twist, TwistEventListener> twistEntry : twistMap.entrySet()) {
-				Twist twist = twistEntry.getKey();
-				TwistEventListener eventListener = twistEntry.getValue();
-				
-				if (twist.isPressed()) {
-					eventListener.onButtonPressed();
-				}
-				
-				if (twist.hasMoved()) {
-					eventListener.onEncoderTurned(twist.getDiff(true));
-				}
-			}
-		}
+		this.essential = true;
 	}
 	
 	protected void registerTwist(Twist twist, TwistEventListener eventListener) {
 		twistMap.put(twist, eventListener);
 	}
 	
+	public TwistEventListener getTwistEventListener(Twist twist) {
+		return twistMap.get(twist);
+	}
+	
+	// Binds the effect's controls to the given Twists, in the order its Twist constructor takes
+	// them. Controls past the last Twist given stay unbound, effects without controls ignore it
+	public void bindTwists(Twist... twists) {
+		
+	}
+	
+	// Same parameters and enabled flag, but fresh DSP state and no Twist bindings, so the copy
+	// can render the same sound on another thread without touching this instance
+	public EffectBase copy() {
+		EffectBase copy = createCopy();
+		copy.setEnabled(isEnabled());
+		copy.setEssential(isEssential());
+		return copy;
+	}
+	
+	protected abstract EffectBase createCopy();
+	
+	// Called by EffectChain on the audio thread when it sheds or restores load. Effects with a
+	// cheaper mode switch to it here, without allocating and without an audible step.
+	public void setDegradationTier(DegradationTier tier) {
+		
+	}
+	
+	// Called by EffectChain on the audio thread before a shed effect fades back in. Effects that
+	// hold past signal, such as delay lines, clear it here, without allocating.
+	public void reset() {
+		
+	}
+	
+	// Parameter updates the audio thread has yet to pick up, for effects that take any
+	public long getPendingParameterUpdates() {
+		return 0;
+	}
+	
 	protected abstract int applyEffect(int inputSignal);
 	
+	// Processes one block of frames. Runs on the audio thread, so implementations must not
+	// allocate, and must tolerate in == out. The default adapts the per-sample applyEffect.
+	public void process(float[] in, float[] out, int frames) {
+		for (int i = 0; i < frames; i++) {
+			out[i] = applyEffect(Math.round(in[i] * SAMPLE_SCALE)) / SAMPLE_SCALE;
+		}
+	}
+	
 }
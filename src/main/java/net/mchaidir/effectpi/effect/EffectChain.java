@@ -1,10 +1,115 @@
 package net.mchaidir.effectpi.effect;
 
+import net.mchaidir.effectpi.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+// Runs the effects in order. When given a block budget it also governs its own load: per-effect
+// block times are smoothed into costs, a sustained overrun steps the chain down one
+// DegradationTier at a time, and a long stretch of headroom steps it back up. Stepping up is
+// slower than stepping down, and slower still each time a step up is soon undone, so the chain
+// settles rather than oscillates. Effects shed under ESSENTIAL_ONLY fade out over SHED_FADE_MILLIS,
+// however short the blocks, and are reset before fading back in so nothing stale is heard.
 public class EffectChain {
 	
-	private List<EffectBase> effects;
+	private static final float HIGH_LOAD = 0.8f;
+	private static final float LOW_LOAD = 0.5f;
+	// About 32 blocks
+	private static final float COST_SMOOTHING = 1f / 32;
+	// Net blocks over HIGH_LOAD before stepping down, a lone spike is not an overload
+	private static final int OVERLOAD_BLOCKS = 16;
+	// Lets one step take effect before the next
+	private static final int STEP_DOWN_HOLD_BLOCKS = 256;
+	private static final int MIN_RECOVERY_BLOCKS = 2048;
+	private static final int MAX_RECOVERY_BLOCKS = 32768;
+	// A few blocks at any usual period, long enough not to click
+	static final double SHED_FADE_MILLIS = 15.0;
+	
+	private final EffectBase[] effects;
+	
+	private final int maxFrames;
+	private final float[] pingBuffer;
+	private final float[] pongBuffer;
+	private final boolean[] activeEffects;
+	// Block processing time of each effect, recorded by the thread running the chain
+	private final LatencyHistogram[] effectHistograms;
+	
+	// Governor state, audio thread only apart from the budget and tier
+	private volatile long budgetNanos;
+	// Wet gain change per block, the budget is one block's time so this fixes the fade's duration
+	private volatile float fadeStep;
+	private volatile DegradationTier degradationTier;
+	private final float[] effectCosts;
+	// Wet gain of each effect at the end of the last block, 0 once shed
+	private final float[] wetGains;
+	private final float[] startGains;
+	private final boolean[] fadingEffects;
+	private final float[] dryBuffer;
+	private int overloadScore;
+	private int blocksSinceStep;
+	private int recoveryBlocks;
+	private boolean lastStepWasUp;
+	
+	public EffectChain(List<EffectBase> effects, int maxFrames) {
+		this.effects = effects.toArray(new EffectBase[0]);
+		this.maxFrames = maxFrames;
+		this.pingBuffer = new float[maxFrames];
+		this.pongBuffer = new float[maxFrames];
+		this.activeEffects = new boolean[this.effects.length];
+		this.effectHistograms = new LatencyHistogram[this.effects.length];
+		for (int i = 0; i < effectHistograms.length; i++) {
+			effectHistograms[i] = new LatencyHistogram(0);
+		}
+		
+		this.degradationTier = DegradationTier.FULL;
+		this.effectCosts = new float[this.effects.length];
+		this.wetGains = new float[this.effects.length];
+		Arrays.fill(wetGains, 1f);
+		this.startGains = new float[this.effects.length];
+		this.fadingEffects = new boolean[this.effects.length];
+		this.dryBuffer = new float[maxFrames];
+		this.recoveryBlocks = MIN_RECOVERY_BLOCKS;
+		this.fadeStep = 1f;
+	}
+	
+	// Time one block may take, 0 turns the governor off, which is how offline chains run
+	public void setBudgetNanos(long budgetNanos) {
+		this.budgetNanos = budgetNanos;
+		double fadeBlocks = budgetNanos > 0 ? SHED_FADE_MILLIS * 1_000_000.0 / budgetNanos : 1.0;
+		this.fadeStep = (float) (1.0 / Math.max(1.0, Math.ceil(fadeBlocks)));
+	}
+	
+	public DegradationTier getDegradationTier() {
+		return degradationTier;
+	}
+	
+	public List<EffectBase> getEffects() {
+		return List.of(effects);
+	}
+	
+	// In chain order, parallel to getEffects
+	public List<LatencyHistogram> getEffectHistograms() {
+		return List.of(effectHistograms);
+	}
+	
+	public long getPendingParameterUpdates() {
+		long pending = 0;
+		for (EffectBase effect : effects) {
+			pending += effect.getPendingParameterUpdates();
+		}
+		return pending;
+	}
+	
+	// Independent chain for another thread, see EffectBase.copy
+	public EffectChain copy() {
+		List<EffectBase> copies = new ArrayList<>(effects.length);
+		for (EffectBase effect : effects) {
+			copies.add(effect.copy());
+		}
+		return new EffectChain(copies, maxFrames);
+	}
 	
 	public int applyEffects(int inputSignal) {
 		int signal = inputSignal;
@@ -17,4 +122,135 @@ public class EffectChain {
 		return signal;
 	}
 	
+	// Runs a whole block through every enabled effect, ping-ponging between the two
+	// preallocated buffers. The last enabled effect writes straight into out.
+	public void process(float[] in, float[] out, int frames) {
+		if (frames > maxFrames) {
+			throw new IllegalArgumentException("frames must not exceed " + maxFrames);
+		}
+		
+		// Sample the flags once so a toggle mid-block cannot strand the signal in a scratch buffer
+		boolean shedding = degradationTier == DegradationTier.ESSENTIAL_ONLY;
+		float fadeStep = this.fadeStep;
+		int remaining = 0;
+		for (int i = 0; i < effects.length; i++) {
+			// A shed effect keeps running until it has faded out, a restored one runs as it fades in
+			float startGain = wetGains[i];
+			float endGain = shedding && !effects[i].isEssential()
+					? Math.max(0f, startGain - fadeStep)
+					: Math.min(1f, startGain + fadeStep);
+			if (startGain == 0f && endGain > 0f) {
+				// Whatever it held when it stopped is long out of date
+				effects[i].reset();
+			}
+			startGains[i] = startGain;
+			wetGains[i] = endGain;
+			fadingEffects[i] = startGain != 1f || endGain != 1f;
+			activeEffects[i] = effects[i].isEnabled() && (startGain > 0f || endGain > 0f);
+			if (activeEffects[i]) {
+				remaining++;
+			}
+		}
+		
+		if (remaining == 0) {
+			if (in != out) {
+				System.arraycopy(in, 0, out, 0, frames);
+			}
+			return;
+		}
+		
+		long blockNanos = 0;
+		float[] source = in;
+		for (int i = 0; i < effects.length; i++) {
+			if (!activeEffects[i]) {
+				effectCosts[i] -= COST_SMOOTHING * effectCosts[i];
+				continue;
+			}
+			
+			float[] target = --remaining == 0
+					? out
+					: (source == pingBuffer ? pongBuffer : pingBuffer);
+			float[] dry = source;
+			if (fadingEffects[i] && target == source) {
+				System.arraycopy(source, 0, dryBuffer, 0, frames);
+				dry = dryBuffer;
+			}
+			
+			long startNanos = System.nanoTime();
+			effects[i].process(source, target, frames);
+			long elapsedNanos = System.nanoTime() - startNanos;
+			effectHistograms[i].record(elapsedNanos);
+			effectCosts[i] += COST_SMOOTHING * (elapsedNanos - effectCosts[i]);
+			blockNanos += elapsedNanos;
+			
+			if (fadingEffects[i]) {
+				crossfade(dry, target, frames, startGains[i], wetGains[i]);
+			}
+			source = target;
+		}
+		
+		govern(blockNanos);
+	}
+	
+	private void govern(long blockNanos) {
+		long budgetNanos = this.budgetNanos;
+		if (budgetNanos <= 0) {
+			return;
+		}
+		
+		if (blocksSinceStep < Integer.MAX_VALUE) {
+			blocksSinceStep++;
+		}
+		if (blockNanos > HIGH_LOAD * budgetNanos) {
+			overloadScore = Math.min(overloadScore + 1, OVERLOAD_BLOCKS);
+		} else if (overloadScore > 0) {
+			overloadScore--;
+		}
+		
+		DegradationTier tier = degradationTier;
+		if (overloadScore == OVERLOAD_BLOCKS && blocksSinceStep >= STEP_DOWN_HOLD_BLOCKS
+				&& tier != DegradationTier.ESSENTIAL_ONLY) {
+			if (lastStepWasUp && blocksSinceStep < recoveryBlocks) {
+				recoveryBlocks = Math.min(recoveryBlocks * 2, MAX_RECOVERY_BLOCKS);
+			}
+			step(tier.lower(), false);
+			return;
+		}
+		
+		if (tier == DegradationTier.FULL) {
+			if (blocksSinceStep >= MAX_RECOVERY_BLOCKS) {
+				recoveryBlocks = MIN_RECOVERY_BLOCKS;
+			}
+			return;
+		}
+		
+		// Stepping up is judged on the smoothed costs, which still include anything faded in
+		float cost = 0f;
+		for (float effectCost : effectCosts) {
+			cost += effectCost;
+		}
+		if (cost < LOW_LOAD * budgetNanos && blocksSinceStep >= recoveryBlocks) {
+			step(tier.higher(), true);
+		}
+	}
+	
+	private void step(DegradationTier tier, boolean up) {
+		degradationTier = tier;
+		for (EffectBase effect : effects) {
+			effect.setDegradationTier(tier);
+		}
+		blocksSinceStep = 0;
+		overloadScore = 0;
+		lastStepWasUp = up;
+	}
+	
+	// Moves the wet gain linearly from startGain to endGain over the block
+	private static void crossfade(float[] dry, float[] wet, int frames, float startGain, float endGain) {
+		float step = (endGain - startGain) / frames;
+		for (int i = 0; i < frames; i++) {
+			float wetGain = startGain + step * (i + 1);
+			wet[i] = dry[i] + wetGain * (wet[i] - dry[i]);
+		}
+	}
+	
 }
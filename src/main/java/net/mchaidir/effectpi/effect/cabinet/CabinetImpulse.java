@@ -0,0 +1,91 @@
+package net.mchaidir.effectpi.effect.cabinet;
+
+import net.mchaidir.effectpi.dsp.Biquad;
+import net.mchaidir.effectpi.dsp.Fft;
+import net.mchaidir.effectpi.sim.WavFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Speaker cabinet impulse responses at the engine's sample rate, normalised so the loudest
+// frequency passes at unity and a cabinet never adds level to the chain
+public final class CabinetImpulse {
+	
+	// Longer responses are room rather than cabinet, and cost partitions for nothing
+	public static final double MAX_IMPULSE_MILLIS = 170.0;
+	
+	private static final double SYNTHETIC_MILLIS = 40.0;
+	
+	private CabinetImpulse() {
+	}
+	
+	// Mono WAV, resampled linearly if it was captured at another rate
+	public static float[] load(Path path, int sampleRate) throws IOException {
+		return fromWav(WavFile.read(path), sampleRate);
+	}
+	
+	public static float[] fromWav(WavFile wav, int sampleRate) {
+		float[] source = wav.getSamples();
+		double step = (double) wav.getSampleRate() / sampleRate;
+		int frames = (int) Math.min(Math.floor((source.length - 1) / step) + 1, maxFrames(sampleRate));
+		float[] impulse = new float[Math.max(1, frames)];
+		for (int i = 0; i < frames; i++) {
+			double position = i * step;
+			int index = (int) position;
+			float fraction = (float) (position - index);
+			float next = index + 1 < source.length ? source[index + 1] : 0f;
+			impulse[i] = source[index] + fraction * (next - source[index]);
+		}
+		return normalise(impulse);
+	}
+	
+	// A closed-back 4x12 in broad strokes: low cut, a bump at the cabinet resonance and the steep
+	// roll-off of a guitar speaker. Used when a preset names no impulse file.
+	public static float[] synthetic(int sampleRate) {
+		Biquad lowCut = new Biquad();
+		lowCut.setHighPass(sampleRate, 80.0, Biquad.BUTTERWORTH_Q);
+		Biquad resonance = new Biquad();
+		resonance.setBandPass(sampleRate, 110.0, 2.0);
+		Biquad presence = new Biquad();
+		presence.setBandPass(sampleRate, 2500.0, 1.5);
+		Biquad rollOff = new Biquad();
+		rollOff.setLowPass(sampleRate, 4500.0, Biquad.BUTTERWORTH_Q);
+		Biquad rollOffSecond = new Biquad();
+		rollOffSecond.setLowPass(sampleRate, 4500.0, Biquad.BUTTERWORTH_Q);
+		
+		float[] impulse = new float[(int) Math.round(SYNTHETIC_MILLIS * sampleRate / 1000.0)];
+		for (int i = 0; i < impulse.length; i++) {
+			float input = i == 0 ? 1f : 0f;
+			float signal = lowCut.process(input);
+			signal += 0.5f * resonance.process(signal) + 0.3f * presence.process(signal);
+			impulse[i] = rollOffSecond.process(rollOff.process(signal));
+		}
+		return normalise(impulse);
+	}
+	
+	static int maxFrames(int sampleRate) {
+		return (int) Math.round(MAX_IMPULSE_MILLIS * sampleRate / 1000.0);
+	}
+	
+	private static float[] normalise(float[] impulse) {
+		Fft fft = new Fft(Math.max(4, Integer.highestOneBit(impulse.length) << 2));
+		float[] padded = Arrays.copyOf(impulse, fft.getSize());
+		float[] re = new float[fft.getBins()];
+		float[] im = new float[fft.getBins()];
+		fft.forward(padded, re, im);
+		
+		double peak = 0.0;
+		for (int k = 0; k < re.length; k++) {
+			peak = Math.max(peak, Math.hypot(re[k], im[k]));
+		}
+		if (peak > 0.0) {
+			float scale = (float) (1.0 / peak);
+			for (int i = 0; i < impulse.length; i++) {
+				impulse[i] *= scale;
+			}
+		}
+		return impulse;
+	}
+	
+}
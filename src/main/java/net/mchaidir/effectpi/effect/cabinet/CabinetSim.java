@@ -0,0 +1,80 @@
+package net.mchaidir.effectpi.effect.cabinet;
+
+import com.sparkfun.qwiic.twist.Twist;
+import net.mchaidir.effectpi.common.TwistEventListener;
+import net.mchaidir.effectpi.dsp.ConvolutionKernel;
+import net.mchaidir.effectpi.dsp.PartitionedConvolver;
+import net.mchaidir.effectpi.effect.DegradationTier;
+import net.mchaidir.effectpi.effect.EffectBase;
+
+import java.util.Map;
+
+// Speaker cabinet by convolution with an impulse response. Partitions are the largest power of
+// two that fits in the chain's block, so the cabinet delays the signal by at most one block.
+// The transformed impulse is shared between copies, only the convolution state is per copy.
+public class CabinetSim extends EffectBase {
+	
+	// Under overload only the head of the impulse is kept, where the speaker's tone lives; the
+	// tail is mostly box resonance and early room
+	private static final int SHORT_IMPULSE_DIVISOR = 4;
+	
+	private final PartitionedConvolver convolver;
+	private final float[] singleSample;
+	
+	public CabinetSim(Map<Twist, TwistEventListener> twistMap, int sampleRate, int blockFrames) {
+		this(twistMap, CabinetImpulse.synthetic(sampleRate), blockFrames);
+	}
+	
+	public CabinetSim(Map<Twist, TwistEventListener> twistMap, float[] impulse, int blockFrames) {
+		this(twistMap, new ConvolutionKernel(impulse, partitionFrames(blockFrames)));
+	}
+	
+	public CabinetSim(Map<Twist, TwistEventListener> twistMap, ConvolutionKernel kernel) {
+		this.convolver = new PartitionedConvolver(kernel);
+		this.singleSample = new float[1];
+		
+		twistMap.forEach(this::registerTwist);
+	}
+	
+	@Override
+	public void setDegradationTier(DegradationTier tier) {
+		int partitions = convolver.getKernel().getPartitions();
+		convolver.setMaxPartitions(tier.isAtLeast(DegradationTier.SHORT_IMPULSES)
+				? (partitions + SHORT_IMPULSE_DIVISOR - 1) / SHORT_IMPULSE_DIVISOR
+				: partitions);
+	}
+	
+	public int getLatencyFrames() {
+		return convolver.getLatencyFrames();
+	}
+	
+	@Override
+	public void reset() {
+		convolver.reset();
+	}
+	
+	@Override
+	protected EffectBase createCopy() {
+		return new CabinetSim(Map.of(), convolver.getKernel());
+	}
+	
+	public int applyEffect(int inputSignal) {
+		singleSample[0] = inputSignal / SAMPLE_SCALE;
+		process(singleSample, singleSample, 1);
+		return Math.round(singleSample[0] * SAMPLE_SCALE);
+	}
+	
+	@Override
+	public void process(float[] in, float[] out, int frames) {
+		if (in != out) {
+			System.arraycopy(in, 0, out, 0, frames);
+		}
+		convolver.process(out, 0, frames);
+	}
+	
+	// The transform needs at least four points, so partitions of at least two frames
+	public static int partitionFrames(int blockFrames) {
+		return Math.max(2, Integer.highestOneBit(blockFrames));
+	}
+	
+}
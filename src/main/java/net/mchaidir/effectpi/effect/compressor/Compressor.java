@@ -0,0 +1,116 @@
+package net.mchaidir.effectpi.effect.compressor;
+
+import com.sparkfun.qwiic.twist.Twist;
+import net.mchaidir.effectpi.common.LayeredTwistEventListener;
+import net.mchaidir.effectpi.common.ParameterStore;
+import net.mchaidir.effectpi.common.TwistEventListener;
+import net.mchaidir.effectpi.dsp.DynamicsProcessor;
+import net.mchaidir.effectpi.effect.EffectBase;
+
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+public class Compressor extends EffectBase {
+	
+	private final int sampleRate;
+	
+	private final ParameterStore<CompressorParameters> parameterStore;
+	private CompressorParameters appliedParameters;
+	
+	private final DynamicsProcessor dynamics;
+	private final float[] singleSample;
+	
+	public Compressor(Twist compressorTwist, int sampleRate) {
+		this(Map.of(), sampleRate);
+		bindTwists(compressorTwist);
+	}
+	
+	@Override
+	public void bindTwists(Twist... twists) {
+		if (twists.length < 1) {
+			return;
+		}
+		registerTwist(twists[0], new LayeredTwistEventListener(new TwistEventListener[] {
+				new ThresholdTwistEventListener(this),
+				new RatioTwistEventListener(this),
+				new MakeupGainTwistEventListener(this)
+		}));
+	}
+	
+	public Compressor(Map<Twist, TwistEventListener> twistMap, int sampleRate) {
+		this(twistMap, sampleRate, CompressorParameters.defaults());
+	}
+	
+	public Compressor(Map<Twist, TwistEventListener> twistMap,
+										int sampleRate,
+										CompressorParameters parameters) {
+		this.sampleRate = sampleRate;
+		this.parameterStore = new ParameterStore<>(parameters);
+		this.dynamics = new DynamicsProcessor(sampleRate);
+		this.singleSample = new float[1];
+		
+		retarget(parameters);
+		twistMap.forEach(this::registerTwist);
+	}
+	
+	public CompressorParameters getParameters() {
+		return parameterStore.peek();
+	}
+	
+	// Called from control threads, the audio thread sees the result at its next block
+	public void updateParameters(UnaryOperator<CompressorParameters> updater) {
+		parameterStore.update(updater);
+	}
+	
+	// Look-ahead delays the signal by this much
+	public int getLatencyFrames() {
+		return dynamics.getLookAheadFrames();
+	}
+	
+	@Override
+	public long getPendingParameterUpdates() {
+		return parameterStore.getPendingUpdates();
+	}
+	
+	@Override
+	public void reset() {
+		dynamics.reset();
+	}
+	
+	@Override
+	protected EffectBase createCopy() {
+		return new Compressor(Map.of(), sampleRate, parameterStore.peek());
+	}
+	
+	public int applyEffect(int inputSignal) {
+		singleSample[0] = inputSignal / SAMPLE_SCALE;
+		process(singleSample, singleSample, 1);
+		return Math.round(singleSample[0] * SAMPLE_SCALE);
+	}
+	
+	@Override
+	public void process(float[] in, float[] out, int frames) {
+		CompressorParameters parameters = parameterStore.acquire();
+		if (parameters != appliedParameters) {
+			retarget(parameters);
+		}
+		
+		if (in != out) {
+			System.arraycopy(in, 0, out, 0, frames);
+		}
+		// Gain changes are ramped inside the processor, so parameter steps do not zipper
+		dynamics.process(out, 0, frames);
+	}
+	
+	private void retarget(CompressorParameters parameters) {
+		dynamics.setThresholdDb((float) parameters.getThresholdDb());
+		dynamics.setRatio((float) parameters.getRatio());
+		dynamics.setKneeDb((float) parameters.getKneeDb());
+		dynamics.setMakeupDb((float) parameters.getMakeupDb());
+		dynamics.setTimes(parameters.getAttackMillis(), parameters.getReleaseMillis());
+		dynamics.setLookAheadMillis(parameters.getLookAheadMillis());
+		dynamics.setDetector(parameters.getDetector(), parameters.getRmsWindowMillis());
+		appliedParameters = parameters;
+	}
+	
+}
@@ -0,0 +1,64 @@
+package net.mchaidir.effectpi.effect.compressor;
+
+import lombok.Builder;
+import lombok.Value;
+import lombok.With;
+import net.mchaidir.effectpi.dsp.EnvelopeDetector;
+
+@Value
+@With
+@Builder(toBuilder = true)
+public class CompressorParameters {
+	
+	public static final double MIN_THRESHOLD_DB = -60.0;
+	public static final double MAX_THRESHOLD_DB = 0.0;
+	public static final double MAX_RATIO = 20.0;
+	public static final double MAX_MAKEUP_DB = 24.0;
+	
+	// Per encoder detent
+	private static final double THRESHOLD_STEP_DB = 1.0;
+	private static final double RATIO_STEP = 0.5;
+	private static final double MAKEUP_STEP_DB = 0.5;
+	
+	@Builder.Default
+	double thresholdDb = -18.0;
+	@Builder.Default
+	double ratio = 4.0;
+	@Builder.Default
+	double kneeDb = 6.0;
+	@Builder.Default
+	double makeupDb = 0.0;
+	
+	@Builder.Default
+	double attackMillis = 5.0;
+	@Builder.Default
+	double releaseMillis = 100.0;
+	@Builder.Default
+	double lookAheadMillis = 0.0;
+	
+	@Builder.Default
+	EnvelopeDetector detector = EnvelopeDetector.RMS;
+	@Builder.Default
+	double rmsWindowMillis = 10.0;
+	
+	public static CompressorParameters defaults() {
+		return builder().build();
+	}
+	
+	public CompressorParameters adjustThresholdDb(int delta) {
+		return withThresholdDb(clamp(thresholdDb + delta * THRESHOLD_STEP_DB, MIN_THRESHOLD_DB, MAX_THRESHOLD_DB));
+	}
+	
+	public CompressorParameters adjustRatio(int delta) {
+		return withRatio(clamp(ratio + delta * RATIO_STEP, 1.0, MAX_RATIO));
+	}
+	
+	public CompressorParameters adjustMakeupDb(int delta) {
+		return withMakeupDb(clamp(makeupDb + delta * MAKEUP_STEP_DB, 0.0, MAX_MAKEUP_DB));
+	}
+	
+	private static double clamp(double value, double min, double max) {
+		return Math.max(min, Math.min(value, max));
+	}
+	
+}
@@ -0,0 +1,22 @@
+package net.mchaidir.effectpi.effect.compressor;
+
+import net.mchaidir.effectpi.common.TwistEventListener;
+
+public class MakeupGainTwistEventListener implements TwistEventListener {
+	
+	private final Compressor compressor;
+	
+	public MakeupGainTwistEventListener(Compressor compressor) {
+		this.compressor = compressor;
+	}
+	
+	@Override
+	public void onButtonPressed() {
+		
+	}
+	
+	@Override
+	public void onEncoderTurned(int encoderDelta) {
+		compressor.updateParameters(parameters -> parameters.adjustMakeupDb(encoderDelta));
+	}
+}
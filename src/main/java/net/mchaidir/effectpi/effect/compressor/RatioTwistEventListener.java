@@ -0,0 +1,22 @@
+package net.mchaidir.effectpi.effect.compressor;
+
+import net.mchaidir.effectpi.common.TwistEventListener;
+
+public class RatioTwistEventListener implements TwistEventListener {
+	
+	private final Compressor compressor;
+	
+	public RatioTwistEventListener(Compressor compressor) {
+		this.compressor = compressor;
+	}
+	
+	@Override
+	public void onButtonPressed() {
+		
+	}
+	
+	@Override
+	public void onEncoderTurned(int encoderDelta) {
+		compressor.updateParameters(parameters -> parameters.adjustRatio(encoderDelta));
+	}
+}
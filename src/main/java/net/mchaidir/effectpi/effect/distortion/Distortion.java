@@ -1,38 +1,89 @@
 package net.mchaidir.effectpi.effect.distortion;
 
 import com.sparkfun.qwiic.twist.Twist;
-import lombok.Getter;
-import lombok.Setter;
+import net.mchaidir.effectpi.common.ParameterStore;
+import net.mchaidir.effectpi.dsp.Biquad;
+import net.mchaidir.effectpi.dsp.ClippingCurve;
+import net.mchaidir.effectpi.dsp.DynamicsProcessor;
+import net.mchaidir.effectpi.dsp.Kernels;
+import net.mchaidir.effectpi.dsp.NonlinearStage;
+import net.mchaidir.effectpi.dsp.OnePole;
+import net.mchaidir.effectpi.dsp.Oversampler;
+import net.mchaidir.effectpi.dsp.OversamplingFactor;
+import net.mchaidir.effectpi.dsp.SmoothedValue;
+import net.mchaidir.effectpi.dsp.SmoothingType;
+import net.mchaidir.effectpi.dsp.Waveshaper;
+import net.mchaidir.effectpi.effect.DegradationTier;
 import net.mchaidir.effectpi.effect.EffectBase;
 import net.mchaidir.effectpi.common.TwistEventListener;
 import net.mchaidir.effectpi.common.LayeredTwistEventListener;
 
 import java.util.Map;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.UnaryOperator;
 
-@Getter
-@Setter
 public class Distortion extends EffectBase {
 	
-	private int distortionValue;
-	private int volumeValue;
-	private int lowCutoffValue;
-	private int midCutoffValue;
-	private int highCutoffValue;
+	private final int sampleRate;
 	
-	private int gain;
+	private static final int CHUNK_FRAMES = 256;
+	private static final double SMOOTHING_MILLIS = 20.0;
+	private static final double MID_Q = 1.0;
+	private static final double COMPRESSOR_ATTACK_MILLIS = 1.0;
+	private static final double COMPRESSOR_RELEASE_MILLIS = 50.0;
+	private static final float COMPRESSOR_KNEE_DB = 3f;
+	private static final float MIN_COMPRESSION_THRESHOLD = 1e-4f;
+	private static final OversamplingFactor DEGRADED_OVERSAMPLING = OversamplingFactor.X2;
+	// Below the lowest string, the asymmetric curve's offset is all that sits down there
+	private static final double DC_BLOCKER_HZ = 10.0;
+	private static final float DC_SETTLED = 1e-6f;
 	
-	private double mid;
-	private double bass;
-	private double treble;
+	private final ParameterStore<DistortionParameters> parameterStore;
+	private DistortionParameters appliedParameters;
 	
-	private double compressionRatio;
-	private int compressionThreshold;
+	private final SmoothedValue gain;
+	private final SmoothedValue volume;
+	private final SmoothedValue clippingThreshold;
+	private final SmoothedValue bass;
+	private final SmoothedValue mid;
+	private final SmoothedValue treble;
+	private final SmoothedValue lowCutoff;
+	private final SmoothedValue midCutoff;
+	private final SmoothedValue highCutoff;
+	private final SmoothedValue compressionThreshold;
+	private final SmoothedValue compressionRatio;
+	
+	private final Waveshaper waveshaper;
+	private final Oversampler oversampler;
+	private final NonlinearStage clippingStage;
+	private OversamplingFactor requestedOversampling;
+	private DegradationTier degradationTier;
+	private float chunkClippingThreshold;
+	private final Biquad bassFilter;
+	private final Biquad midFilter;
+	private final Biquad trebleFilter;
+	// High-pass as input minus its low-pass, run while the curve is asymmetric
+	private final OnePole dcBlocker;
+	private float appliedLowCutoff;
+	private float appliedMidCutoff;
+	private float appliedHighCutoff;
+	private final DynamicsProcessor dynamics;
+	
+	private final float[] rampBuffer;
+	private final float[] crossfadeBuffer;
+	private final float[] singleSample;
 	
 	public Distortion(Twist distortionLevelTwist,
 										Twist distortionCutoffTwist,
-										ScheduledExecutorService scheduledExecutorService) {
-		super(scheduledExecutorService);
+										int sampleRate) {
+		this(Map.of(), sampleRate);
+		bindTwists(distortionLevelTwist, distortionCutoffTwist);
+	}
+	
+	@Override
+	public void bindTwists(Twist... twists) {
+		if (twists.length < 1) {
+			return;
+		}
 		
 		TwistEventListener distortionValueTwistEventListener =
 				new DistortionValueTwistEventListener(this);
@@ -44,83 +95,254 @@ public class Distortion extends EffectBase {
 								distortionValueTwistEventListener,
 								volumeValueTwistEventListener
 						});
-		registerTwist(distortionLevelTwist, distortionLevelTwistEventListener);
+		registerTwist(twists[0], distortionLevelTwistEventListener);
+		if (twists.length < 2) {
+			return;
+		}
 		
 		TwistEventListener distortionCutoffTwistEventListener =
 				new LayeredTwistEventListener(new TwistEventListener[] {
-						lowCutoffEventListener,
-						midCutoffEventListener,
-						highCutoffEventListener
+						new LowCutoffTwistEventListener(this),
+						new MidCutoffTwistEventListener(this),
+						new HighCutoffTwistEventListener(this)
 				});
-		registerTwist(distortionCutoffTwist, distortionCutoffTwistEventListener);
+		registerTwist(twists[1], distortionCutoffTwistEventListener);
 	}
 	
 	public Distortion(Map<Twist, TwistEventListener> twistMap,
-										ScheduledExecutorService scheduledExecutorService) {
-		super(scheduledExecutorService);
+										int sampleRate) {
+		this(twistMap, sampleRate, DistortionParameters.defaults());
+	}
+	
+	// Starts settled on the given parameters rather than ramping towards them
+	public Distortion(Map<Twist, TwistEventListener> twistMap,
+										int sampleRate,
+										DistortionParameters parameters) {
+		this.sampleRate = sampleRate;
+		this.parameterStore = new ParameterStore<>(parameters);
+		
+		// Level controls ramp exponentially to follow loudness, frequencies and thresholds linearly
+		this.gain = new SmoothedValue(SmoothingType.EXPONENTIAL, sampleRate, SMOOTHING_MILLIS, 0f);
+		this.volume = new SmoothedValue(SmoothingType.EXPONENTIAL, sampleRate, SMOOTHING_MILLIS, 0f);
+		this.clippingThreshold = new SmoothedValue(SmoothingType.LINEAR, sampleRate, SMOOTHING_MILLIS, 0f);
+		this.bass = new SmoothedValue(SmoothingType.EXPONENTIAL, sampleRate, SMOOTHING_MILLIS, 0f);
+		this.mid = new SmoothedValue(SmoothingType.EXPONENTIAL, sampleRate, SMOOTHING_MILLIS, 0f);
+		this.treble = new SmoothedValue(SmoothingType.EXPONENTIAL, sampleRate, SMOOTHING_MILLIS, 0f);
+		this.lowCutoff = new SmoothedValue(SmoothingType.LINEAR, sampleRate, SMOOTHING_MILLIS, 0f);
+		this.midCutoff = new SmoothedValue(SmoothingType.LINEAR, sampleRate, SMOOTHING_MILLIS, 0f);
+		this.highCutoff = new SmoothedValue(SmoothingType.LINEAR, sampleRate, SMOOTHING_MILLIS, 0f);
+		this.compressionThreshold = new SmoothedValue(SmoothingType.LINEAR, sampleRate, SMOOTHING_MILLIS, 0f);
+		this.compressionRatio = new SmoothedValue(SmoothingType.LINEAR, sampleRate, SMOOTHING_MILLIS, 0f);
+		this.waveshaper = new Waveshaper(ClippingCurve.TANH);
+		this.oversampler = new Oversampler(OversamplingFactor.X1, CHUNK_FRAMES);
+		this.clippingStage = this::clip;
+		this.degradationTier = DegradationTier.FULL;
+		this.bassFilter = new Biquad();
+		this.midFilter = new Biquad();
+		this.trebleFilter = new Biquad();
+		this.dcBlocker = new OnePole();
+		this.dcBlocker.setLowPass(sampleRate, DC_BLOCKER_HZ);
+		this.appliedLowCutoff = Float.NaN;
+		this.appliedMidCutoff = Float.NaN;
+		this.appliedHighCutoff = Float.NaN;
+		this.dynamics = new DynamicsProcessor(sampleRate);
+		this.dynamics.setTimes(COMPRESSOR_ATTACK_MILLIS, COMPRESSOR_RELEASE_MILLIS);
+		this.dynamics.setKneeDb(COMPRESSOR_KNEE_DB);
+		this.rampBuffer = new float[CHUNK_FRAMES];
+		this.crossfadeBuffer = new float[CHUNK_FRAMES];
+		this.singleSample = new float[1];
+		
+		retarget(parameterStore.acquire());
+		snapToTargets();
+		twistMap.forEach(this::registerTwist);
+	}
+	
+	public DistortionParameters getParameters() {
+		return parameterStore.peek();
+	}
+	
+	// Called from control threads, the audio thread sees the result at its next block
+	public void updateParameters(UnaryOperator<DistortionParameters> updater) {
+		parameterStore.update(updater);
+	}
+	
+	@Override
+	public long getPendingParameterUpdates() {
+		return parameterStore.getPendingUpdates();
+	}
+	
+	@Override
+	protected EffectBase createCopy() {
+		return new Distortion(Map.of(), sampleRate, parameterStore.peek());
 	}
 	
 	public int applyEffect(int inputSignal) {
-		// Apply Gain/Drive
-		int signal = (int) (inputSignal * gain);
+		singleSample[0] = inputSignal / SAMPLE_SCALE;
+		process(singleSample, singleSample, 1);
+		return Math.round(singleSample[0] * SAMPLE_SCALE);
+	}
+	
+	@Override
+	public void process(float[] in, float[] out, int frames) {
+		// One snapshot per block, so grouped fields like bass/mid/treble can never be torn
+		DistortionParameters parameters = parameterStore.acquire();
+		if (parameters != appliedParameters) {
+			retarget(parameters);
+		}
+		
+		for (int offset = 0; offset < frames; offset += CHUNK_FRAMES) {
+			processChunk(in, out, offset, Math.min(CHUNK_FRAMES, frames - offset));
+		}
+	}
+	
+	private void retarget(DistortionParameters parameters) {
+		gain.setTarget((float) parameters.getGain());
+		volume.setTarget((float) parameters.getVolume());
+		clippingThreshold.setTarget(parameters.getClippingThreshold() / SAMPLE_SCALE);
+		bass.setTarget((float) parameters.getBass());
+		mid.setTarget((float) parameters.getMid());
+		treble.setTarget((float) parameters.getTreble());
+		lowCutoff.setTarget(parameters.getLowCutoffValue());
+		midCutoff.setTarget(parameters.getMidCutoffValue());
+		highCutoff.setTarget(parameters.getHighCutoffValue());
+		compressionThreshold.setTarget(parameters.getCompressionThreshold() / SAMPLE_SCALE);
+		compressionRatio.setTarget((float) parameters.getCompressionRatio());
+		waveshaper.setCurve(parameters.getClippingCurve());
+		requestedOversampling = parameters.getOversampling();
+		appliedParameters = parameters;
+	}
+	
+	private void snapToTargets() {
+		for (SmoothedValue value : new SmoothedValue[] {
+				gain, volume, clippingThreshold, bass, mid, treble,
+				lowCutoff, midCutoff, highCutoff, compressionThreshold, compressionRatio}) {
+			value.reset(value.getTarget());
+		}
+		oversampler.setFactor(effectiveOversampling());
+	}
+	
+	private void processChunk(float[] in, float[] out, int offset, int frames) {
+		// Tone, threshold and ratio values move at block rate, level changes are ramped per sample
+		float clippingThreshold = this.clippingThreshold.advance(frames);
+		float bass = this.bass.advance(frames);
+		float mid = this.mid.advance(frames);
+		float treble = this.treble.advance(frames);
+		float lowCutoff = this.lowCutoff.advance(frames);
+		float midCutoff = this.midCutoff.advance(frames);
+		float highCutoff = this.highCutoff.advance(frames);
+		float compressionThreshold = this.compressionThreshold.advance(frames);
+		float compressionRatio = this.compressionRatio.advance(frames);
 		
-		// Apply Clipping
-		if (clippingType.equals("soft")) {
-			signal = (int) (Math.tanh((double) signal / clippingThreshold) * clippingThreshold);
-		} else if (clippingType.equals("hard")) {
-			signal = Math.max(-clippingThreshold, Math.min(signal, clippingThreshold));
-		} else {
-			throw new IllegalArgumentException("clippingType must be 'soft' or 'hard'");
+		// Apply Gain/Drive
+		gain.fill(rampBuffer, frames);
+		if (in != out) {
+			System.arraycopy(in, offset, out, offset, frames);
 		}
+		Kernels.multiply(out, offset, rampBuffer, frames);
+		
+		// Apply Clipping, the only stage that creates harmonics, so the only one oversampled
+		chunkClippingThreshold = clippingThreshold;
+		clipOversampled(out, offset, frames);
+		blockDc(out, offset, frames);
 		
 		// Apply Tone Control
-		signal = toneControl(signal, bass, mid, treble, sampleRate);
+		updateToneFilters(lowCutoff, midCutoff, highCutoff);
+		toneControl(out, offset, frames, bass, mid, treble);
 		
 		// Apply Compression
-		signal = compress(signal, compressionThreshold, compressionRatio);
+		compress(out, offset, frames, compressionThreshold, compressionRatio);
 		
-		return signal;
+		// Apply Volume
+		volume.fill(rampBuffer, frames);
+		Kernels.multiply(out, offset, rampBuffer, frames);
 	}
 	
-	// More sophisticated tone control with bass, mid, and treble adjustments
-	int toneControl(int signal, double bass, double mid, double treble, int sampleRate) {
-		// Apply bass (low-pass filter)
-		int bassSignal = applyLowPassFilter(signal, bass, sampleRate);
-		
-		// Apply mid (band-pass filter)
-		int midSignal = applyBandPassFilter(signal, mid, sampleRate);
+	@Override
+	public void setDegradationTier(DegradationTier tier) {
+		degradationTier = tier;
+	}
+	
+	private OversamplingFactor effectiveOversampling() {
+		if (degradationTier.isAtLeast(DegradationTier.REDUCED_OVERSAMPLING)
+				&& requestedOversampling.getStages() > DEGRADED_OVERSAMPLING.getStages()) {
+			return DEGRADED_OVERSAMPLING;
+		}
+		return requestedOversampling;
+	}
+	
+	// A new factor starts its half-band stages from silence and with another group delay, so the
+	// chunk it changes on is rendered at both rates and crossfaded
+	private void clipOversampled(float[] buffer, int offset, int frames) {
+		OversamplingFactor factor = effectiveOversampling();
+		if (factor == oversampler.getFactor()) {
+			oversampler.process(buffer, offset, frames, clippingStage);
+			return;
+		}
 		
-		// Apply treble (high-pass filter)
-		int trebleSignal = applyHighPassFilter(signal, treble, sampleRate);
+		System.arraycopy(buffer, offset, crossfadeBuffer, 0, frames);
+		oversampler.process(crossfadeBuffer, 0, frames, clippingStage);
+		oversampler.setFactor(factor);
+		oversampler.process(buffer, offset, frames, clippingStage);
+		for (int i = 0; i < frames; i++) {
+			float fade = (i + 1f) / frames;
+			buffer[offset + i] = crossfadeBuffer[i] + fade * (buffer[offset + i] - crossfadeBuffer[i]);
+		}
+	}
+	
+	// The asymmetric curve settles further below zero than above, so heavy drive leaves an offset
+	// that would eat headroom downstream and thump on every bypass. Once the curve changes, the
+	// correction already applied decays at the filter's own rate rather than stepping away
+	private void blockDc(float[] buffer, int offset, int frames) {
+		boolean asymmetric = appliedParameters.getClippingCurve() == ClippingCurve.ASYMMETRIC;
+		if (!asymmetric && Math.abs(dcBlocker.getState()) < DC_SETTLED) {
+			dcBlocker.reset();
+			return;
+		}
 		
-		// Combine all three bands (this is a simple additive approach)
-		return bassSignal + midSignal + trebleSignal;
+		for (int i = offset; i < offset + frames; i++) {
+			float signal = buffer[i];
+			buffer[i] = signal - dcBlocker.process(asymmetric ? signal : 0f);
+		}
 	}
 	
-	// Low-pass filter implementation for bass control
-	int applyLowPassFilter(int signal, double cutoff, int sampleRate) {
-		// Assuming a very simple low-pass filter (first-order)
-		double alpha = Math.exp(-2.0 * Math.PI * cutoff / sampleRate);
-		return (int) (alpha * signal);
+	private void clip(float[] buffer, int offset, int frames) {
+		waveshaper.process(buffer, offset, frames, chunkClippingThreshold);
 	}
 	
-	// Band-pass filter implementation for midrange control
-	int applyBandPassFilter(int signal, double centerFreq, int sampleRate) {
-		// Simple implementation, more complex methods may be required for accuracy
-		double qFactor = 1.0; // Quality factor (determines bandwidth)
-		double alpha = Math.exp(-2.0 * Math.PI * centerFreq / sampleRate / qFactor);
-		return (int) ((1 - alpha) * signal);  // Simplified for demonstration
+	// Three-band tone control: each band filters the same input and the results are mixed by
+	// their gains, all in a single pass over the block. The filters are recursive, so there is
+	// nothing to vectorise across samples, but the three are independent and overlap in the
+	// pipeline, which beats three passes and two scratch copies
+	void toneControl(float[] buffer, int offset, int frames, float bass, float mid, float treble) {
+		for (int i = offset; i < offset + frames; i++) {
+			float signal = buffer[i];
+			buffer[i] = bass * bassFilter.process(signal)
+					+ mid * midFilter.process(signal)
+					+ treble * trebleFilter.process(signal);
+		}
 	}
 	
-	// High-pass filter implementation for treble control
-	int applyHighPassFilter(int signal, double cutoff, int sampleRate) {
-		double alpha = Math.exp(-2.0 * Math.PI * cutoff / sampleRate);
-		return signal - (int) (alpha * signal); // Subtract low frequencies to get high-pass effect
+	// Coefficients are only recomputed when a cutoff actually moved
+	void updateToneFilters(float lowCutoff, float midCutoff, float highCutoff) {
+		if (lowCutoff != appliedLowCutoff) {
+			bassFilter.setLowPass(sampleRate, lowCutoff, Biquad.BUTTERWORTH_Q);
+			appliedLowCutoff = lowCutoff;
+		}
+		if (midCutoff != appliedMidCutoff) {
+			midFilter.setBandPass(sampleRate, midCutoff, MID_Q);
+			appliedMidCutoff = midCutoff;
+		}
+		if (highCutoff != appliedHighCutoff) {
+			trebleFilter.setHighPass(sampleRate, highCutoff, Biquad.BUTTERWORTH_Q);
+			appliedHighCutoff = highCutoff;
+		}
 	}
 	
-	// Apply compression
-	int compress(int signal, int threshold, double ratio) {
-		return signal > threshold ? (int) (threshold + (signal - threshold) / ratio) : signal;
+	// Peak compressor on both polarities, the threshold is linear full scale
+	void compress(float[] buffer, int offset, int frames, float threshold, float ratio) {
+		dynamics.setThresholdDb((float) (20.0 * Math.log10(Math.max(threshold, MIN_COMPRESSION_THRESHOLD))));
+		dynamics.setRatio(ratio);
+		dynamics.process(buffer, offset, frames);
 	}
 	
 }
@@ -0,0 +1,84 @@
+package net.mchaidir.effectpi.effect.distortion;
+
+import lombok.Builder;
+import lombok.Value;
+import lombok.With;
+import net.mchaidir.effectpi.dsp.ClippingCurve;
+import net.mchaidir.effectpi.dsp.OversamplingFactor;
+
+@Value
+@With
+@Builder(toBuilder = true)
+public class DistortionParameters {
+	
+	public static final int MAX_KNOB_VALUE = 100;
+	public static final int MIN_CUTOFF_HZ = 20;
+	public static final int MAX_CUTOFF_HZ = 20000;
+	
+	@Builder.Default
+	int distortionValue = 20;
+	@Builder.Default
+	int volumeValue = 80;
+	@Builder.Default
+	int lowCutoffValue = 250;
+	@Builder.Default
+	int midCutoffValue = 1000;
+	@Builder.Default
+	int highCutoffValue = 3000;
+	
+	@Builder.Default
+	double bass = 1.0;
+	@Builder.Default
+	double mid = 1.0;
+	@Builder.Default
+	double treble = 1.0;
+	
+	@Builder.Default
+	double compressionRatio = 4.0;
+	@Builder.Default
+	int compressionThreshold = 16000;
+	
+	@Builder.Default
+	ClippingCurve clippingCurve = ClippingCurve.TANH;
+	@Builder.Default
+	int clippingThreshold = 12000;
+	@Builder.Default
+	OversamplingFactor oversampling = OversamplingFactor.X4;
+	
+	public static DistortionParameters defaults() {
+		return builder().build();
+	}
+	
+	public double getGain() {
+		return 1.0 + distortionValue;
+	}
+	
+	public double getVolume() {
+		return (double) volumeValue / MAX_KNOB_VALUE;
+	}
+	
+	public DistortionParameters adjustDistortionValue(int delta) {
+		return withDistortionValue(clamp(distortionValue + delta, 0, MAX_KNOB_VALUE));
+	}
+	
+	public DistortionParameters adjustVolumeValue(int delta) {
+		return withVolumeValue(clamp(volumeValue + delta, 0, MAX_KNOB_VALUE));
+	}
+	
+	public DistortionParameters adjustLowCutoffValue(int deltaHz) {
+		return withLowCutoffValue(clamp(lowCutoffValue + deltaHz, MIN_CUTOFF_HZ, MAX_CUTOFF_HZ));
+	}
+	
+	public DistortionParameters adjustMidCutoffValue(int deltaHz) {
+		return withMidCutoffValue(clamp(midCutoffValue + deltaHz, MIN_CUTOFF_HZ, MAX_CUTOFF_HZ));
+	}
+	
+	public DistortionParameters adjustHighCutoffValue(int deltaHz) {
+		return withHighCutoffValue(clamp(highCutoffValue + deltaHz, MIN_CUTOFF_HZ, MAX_CUTOFF_HZ));
+	}
+	
+	private static int clamp(int value, int min, int max) {
+		return Math.max(min, Math.min(value, max));
+	}
+	
+}
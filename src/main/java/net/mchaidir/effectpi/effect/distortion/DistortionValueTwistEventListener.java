@@ -12,11 +12,11 @@ public class DistortionValueTwistEventListener implements TwistEventListener {
 	
 	@Override
 	public void onButtonPressed() {
-	
+		
 	}
 	
 	@Override
 	public void onEncoderTurned(int encoderDelta) {
-		distortion.setDistortionValue(distortion.getDistortionValue() + encoderDelta);
+		distortion.updateParameters(parameters -> parameters.adjustDistortionValue(encoderDelta));
 	}
 }
@@ -0,0 +1,24 @@
+package net.mchaidir.effectpi.effect.distortion;
+
+import net.mchaidir.effectpi.common.TwistEventListener;
+
+public class HighCutoffTwistEventListener implements TwistEventListener {
+	
+	private static final int STEP_HZ = 100;
+	
+	private final Distortion distortion;
+	
+	public HighCutoffTwistEventListener(Distortion distortion) {
+		this.distortion = distortion;
+	}
+	
+	@Override
+	public void onButtonPressed() {
+		
+	}
+	
+	@Override
+	public void onEncoderTurned(int encoderDelta) {
+		distortion.updateParameters(parameters -> parameters.adjustHighCutoffValue(encoderDelta * STEP_HZ));
+	}
+}
@@ -0,0 +1,24 @@
+package net.mchaidir.effectpi.effect.distortion;
+
+import net.mchaidir.effectpi.common.TwistEventListener;
+
+public class MidCutoffTwistEventListener implements TwistEventListener {
+	
+	private static final int STEP_HZ = 50;
+	
+	private final Distortion distortion;
+	
+	public MidCutoffTwistEventListener(Distortion distortion) {
+		this.distortion = distortion;
+	}
+	
+	@Override
+	public void onButtonPressed() {
+		
+	}
+	
+	@Override
+	public void onEncoderTurned(int encoderDelta) {
+		distortion.updateParameters(parameters -> parameters.adjustMidCutoffValue(encoderDelta * STEP_HZ));
+	}
+}
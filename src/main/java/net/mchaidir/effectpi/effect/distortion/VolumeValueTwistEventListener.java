@@ -12,11 +12,11 @@ public class VolumeValueTwistEventListener implements TwistEventListener {
 	
 	@Override
 	public void onButtonPressed() {
-	
+		
 	}
 	
 	@Override
 	public void onEncoderTurned(int encoderDelta) {
-		distortion.setDistortionValue(distortion.getDistortionValue() + encoderDelta);
+		distortion.updateParameters(parameters -> parameters.adjustVolumeValue(encoderDelta));
 	}
 }
@@ -0,0 +1,381 @@
+package net.mchaidir.effectpi.effect.graph;
+
+import com.sparkfun.qwiic.twist.Twist;
+import net.mchaidir.effectpi.common.TwistEventListener;
+import net.mchaidir.effectpi.dsp.Kernels;
+import net.mchaidir.effectpi.effect.DegradationTier;
+import net.mchaidir.effectpi.effect.EffectBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Effects wired as a directed acyclic graph rather than a line: split nodes send one signal down
+// several branches at their own levels, merge nodes mix branches back together, and branches
+// that do not depend on each other run at the same time. The graph is itself an effect, so it
+// sits in an EffectChain and keeps the chain's swapping, metrics and governor.
+//
+// Each node counts down its unfinished inputs once per block. Whoever finishes an input, the
+// audio thread or a GraphWorkerPool thread, decrements the counters after it, and any thread may
+// claim a node whose counter is zero with one CAS. The block ends when the count of unfinished
+// nodes reaches zero. Nothing blocks and nothing is allocated; without a pool, or while the
+// pool serves another graph, the calling thread runs every node itself. A node whose effect
+// throws passes its input through for that block, so one faulty effect cannot stall the block.
+// Under ESSENTIAL_ONLY the non-essential effects inside are shed the way EffectChain sheds its
+// own, except that the fade to their input takes a single block.
+public class EffectGraph extends EffectBase {
+	
+	// The block given to process
+	public static final int INPUT = -1;
+	
+	private final Node[] nodes;
+	private final int output;
+	private final int maxFrames;
+	// May be null
+	private final GraphWorkerPool pool;
+	
+	// Unfinished inputs per node, 0 once it may run
+	private final AtomicIntegerArray pendingInputs;
+	private final AtomicIntegerArray claimedNodes;
+	private final AtomicInteger unfinishedNodes;
+	private final AtomicLong failedNodes;
+	private volatile boolean shedding;
+	// Set by the thread owning the block before it is published, read by the helpers
+	private float[] blockInput;
+	private int blockFrames;
+	
+	private final float[] singleSample;
+	
+	private EffectGraph(Node[] nodes, int output, int maxFrames, GraphWorkerPool pool) {
+		this.nodes = nodes;
+		this.output = output;
+		this.maxFrames = maxFrames;
+		this.pool = pool;
+		this.pendingInputs = new AtomicIntegerArray(nodes.length);
+		this.claimedNodes = new AtomicIntegerArray(nodes.length);
+		this.unfinishedNodes = new AtomicInteger();
+		this.failedNodes = new AtomicLong();
+		this.singleSample = new float[1];
+	}
+	
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	// Every effect in the graph, in the order the nodes were added
+	public List<EffectBase> getEffects() {
+		List<EffectBase> effects = new ArrayList<>();
+		for (Node node : nodes) {
+			if (node.effect != null) {
+				effects.add(node.effect);
+			}
+		}
+		return effects;
+	}
+	
+	// Node runs that threw and were passed through instead
+	public long getFailedNodes() {
+		return failedNodes.get();
+	}
+	
+	@Override
+	public long getPendingParameterUpdates() {
+		long pending = 0;
+		for (Node node : nodes) {
+			if (node.effect != null) {
+				pending += node.effect.getPendingParameterUpdates();
+			}
+		}
+		return pending;
+	}
+	
+	@Override
+	public void setDegradationTier(DegradationTier tier) {
+		shedding = tier == DegradationTier.ESSENTIAL_ONLY;
+		for (Node node : nodes) {
+			if (node.effect != null) {
+				node.effect.setDegradationTier(tier);
+			}
+		}
+	}
+	
+	@Override
+	public void reset() {
+		for (Node node : nodes) {
+			if (node.effect != null) {
+				node.effect.reset();
+			}
+		}
+	}
+	
+	// Every effect is given the same Twists, so a control surface reaches the first effect
+	// that listens on each of them
+	@Override
+	public void bindTwists(Twist... twists) {
+		for (Node node : nodes) {
+			if (node.effect != null) {
+				node.effect.bindTwists(twists);
+			}
+		}
+	}
+	
+	@Override
+	public TwistEventListener getTwistEventListener(Twist twist) {
+		for (Node node : nodes) {
+			if (node.effect != null) {
+				TwistEventListener listener = node.effect.getTwistEventListener(twist);
+				if (listener != null) {
+					return listener;
+				}
+			}
+		}
+		return null;
+	}
+	
+	// Same wiring around copies of the effects, but without the pool: copies run offline or on
+	// low priority threads and must never take the workers from the live graph
+	@Override
+	protected EffectBase createCopy() {
+		Node[] copies = new Node[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			copies[i] = nodes[i].copy(maxFrames);
+		}
+		return new EffectGraph(copies, output, maxFrames, null);
+	}
+	
+	@Override
+	protected int applyEffect(int inputSignal) {
+		singleSample[0] = inputSignal / SAMPLE_SCALE;
+		process(singleSample, singleSample, 1);
+		return Math.round(singleSample[0] * SAMPLE_SCALE);
+	}
+	
+	@Override
+	public void process(float[] in, float[] out, int frames) {
+		if (frames > maxFrames) {
+			throw new IllegalArgumentException("frames must not exceed " + maxFrames);
+		}
+		
+		blockInput = in;
+		blockFrames = frames;
+		for (int i = 0; i < nodes.length; i++) {
+			pendingInputs.set(i, nodes[i].pendingInputs);
+			claimedNodes.set(i, 0);
+		}
+		// Volatile write last, it publishes the block to the helpers
+		unfinishedNodes.set(nodes.length);
+		
+		if (pool != null && pool.begin(this)) {
+			help();
+			pool.end();
+		} else {
+			help();
+		}
+		
+		System.arraycopy(nodes[output].buffer, 0, out, 0, frames);
+	}
+	
+	// Runs whatever nodes are ready until the block is done. Any number of threads at once
+	void help() {
+		while (unfinishedNodes.get() > 0) {
+			// Read after the counter, which published them
+			float[] in = blockInput;
+			int frames = blockFrames;
+			boolean ran = false;
+			for (int i = 0; i < nodes.length; i++) {
+				if (pendingInputs.get(i) == 0 && claimedNodes.get(i) == 0 && claimedNodes.compareAndSet(i, 0, 1)) {
+					try {
+						run(nodes[i], in, frames);
+					} catch (RuntimeException e) {
+						failedNodes.incrementAndGet();
+						System.arraycopy(source(nodes[i].inputs[0], in), 0, nodes[i].buffer, 0, frames);
+					} finally {
+						// Whatever happened, the block must still be able to finish
+						for (int successor : nodes[i].successors) {
+							pendingInputs.decrementAndGet(successor);
+						}
+						unfinishedNodes.decrementAndGet();
+					}
+					ran = true;
+				}
+			}
+			if (!ran) {
+				Thread.onSpinWait();
+			}
+		}
+	}
+	
+	private void run(Node node, float[] in, int frames) {
+		float[] first = source(node.inputs[0], in);
+		switch (node.type) {
+			case EFFECT:
+				runEffect(node, first, frames);
+				break;
+			case SPLIT:
+				Kernels.scale(first, 0, node.buffer, 0, frames, node.gains[0]);
+				break;
+			case MERGE:
+				Kernels.scale(first, 0, node.buffer, 0, frames, node.gains[0]);
+				for (int i = 1; i < node.inputs.length; i++) {
+					Kernels.accumulate(source(node.inputs[i], in), 0, node.buffer, 0, frames, node.gains[i]);
+				}
+				break;
+		}
+	}
+	
+	// Only the thread that claimed the node touches its wet gain, the block counters order it
+	// between blocks
+	private void runEffect(Node node, float[] first, int frames) {
+		float startGain = node.wetGain;
+		float endGain = shedding && !node.effect.isEssential() ? 0f : 1f;
+		node.wetGain = endGain;
+		if (!node.effect.isEnabled() || (startGain == 0f && endGain == 0f)) {
+			System.arraycopy(first, 0, node.buffer, 0, frames);
+			return;
+		}
+		if (startGain == 0f) {
+			// Whatever it held when it was shed is long out of date
+			node.effect.reset();
+		}
+		node.effect.process(first, node.buffer, frames);
+		if (startGain != endGain) {
+			float step = (endGain - startGain) / frames;
+			for (int i = 0; i < frames; i++) {
+				float gain = startGain + step * (i + 1);
+				node.buffer[i] = first[i] + gain * (node.buffer[i] - first[i]);
+			}
+		}
+	}
+	
+	private float[] source(int input, float[] in) {
+		return input == INPUT ? in : nodes[input].buffer;
+	}
+	
+	private enum NodeType {
+		EFFECT,
+		SPLIT,
+		MERGE
+	}
+	
+	private static final class Node {
+		
+		final NodeType type;
+		// Null unless an EFFECT node
+		final EffectBase effect;
+		final int[] inputs;
+		final float[] gains;
+		final float[] buffer;
+		// Inputs that are other nodes, the block input is always ready
+		final int pendingInputs;
+		int[] successors;
+		// 1 while the effect is heard, 0 once it has been shed
+		float wetGain;
+		
+		Node(NodeType type, EffectBase effect, int[] inputs, float[] gains, int maxFrames) {
+			this.type = type;
+			this.effect = effect;
+			this.inputs = inputs;
+			this.gains = gains;
+			this.buffer = new float[maxFrames];
+			this.wetGain = 1f;
+			int pending = 0;
+			for (int input : inputs) {
+				if (input != INPUT) {
+					pending++;
+				}
+			}
+			this.pendingInputs = pending;
+		}
+		
+		Node copy(int maxFrames) {
+			Node copy = new Node(type, effect == null ? null : effect.copy(), inputs, gains, maxFrames);
+			copy.successors = successors;
+			return copy;
+		}
+		
+	}
+	
+	// Nodes are numbered as they are added and may only read INPUT or nodes added before them,
+	// so every graph built is acyclic and its numbering is already a topological order
+	public static class Builder {
+		
+		private final List<NodeType> types = new ArrayList<>();
+		private final List<EffectBase> effects = new ArrayList<>();
+		private final List<int[]> inputs = new ArrayList<>();
+		private final List<float[]> gains = new ArrayList<>();
+		
+		private Builder() {
+		}
+		
+		public int effect(EffectBase effect, int source) {
+			return add(NodeType.EFFECT, effect, new int[] {source}, new float[] {1f});
+		}
+		
+		// One branch per gain, each a copy of source at that level
+		public int[] split(int source, float... branchGains) {
+			int[] branches = new int[branchGains.length];
+			for (int i = 0; i < branches.length; i++) {
+				branches[i] = add(NodeType.SPLIT, null, new int[] {source}, new float[] {branchGains[i]});
+			}
+			return branches;
+		}
+		
+		// Sum of the sources, each at its gain
+		public int merge(int[] sources, float[] sourceGains) {
+			if (sources.length == 0 || sources.length != sourceGains.length) {
+				throw new IllegalArgumentException("A merge needs one gain per source and at least one source");
+			}
+			return add(NodeType.MERGE, null, sources.clone(), sourceGains.clone());
+		}
+		
+		public int merge(int... sources) {
+			float[] unity = new float[sources.length];
+			Arrays.fill(unity, 1f);
+			return merge(sources, unity);
+		}
+		
+		// pool may be null to always run on the calling thread
+		public EffectGraph build(int output, int maxFrames, GraphWorkerPool pool) {
+			if (output < 0 || output >= types.size()) {
+				throw new IllegalArgumentException("Output must be a node of the graph");
+			}
+			
+			Node[] nodes = new Node[types.size()];
+			for (int i = 0; i < nodes.length; i++) {
+				nodes[i] = new Node(types.get(i), effects.get(i), inputs.get(i), gains.get(i), maxFrames);
+			}
+			for (int i = 0; i < nodes.length; i++) {
+				int[] successors = new int[0];
+				for (int j = i + 1; j < nodes.length; j++) {
+					for (int input : nodes[j].inputs) {
+						if (input == i) {
+							successors = Arrays.copyOf(successors, successors.length + 1);
+							successors[successors.length - 1] = j;
+						}
+					}
+				}
+				nodes[i].successors = successors;
+			}
+			return new EffectGraph(nodes, output, maxFrames, pool);
+		}
+		
+		private int add(NodeType type, EffectBase effect, int[] sources, float[] sourceGains) {
+			int node = types.size();
+			for (int source : sources) {
+				if (source != INPUT && (source < 0 || source >= node)) {
+					throw new IllegalArgumentException("Node " + source + " does not exist yet");
+				}
+			}
+			types.add(type);
+			effects.add(effect);
+			inputs.add(sources);
+			gains.add(sourceGains);
+			return node;
+		}
+		
+	}
+	
+}
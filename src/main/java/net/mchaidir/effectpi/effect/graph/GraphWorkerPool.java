@@ -0,0 +1,137 @@
+package net.mchaidir.effectpi.effect.graph;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Dedicated threads that help the audio thread through one EffectGraph block at a time. They are
+// started once and kept: between blocks each spins briefly on the block generation, then parks
+// until the next block unparks it. The JVM cannot pin threads to cores, run under taskset on
+// isolated cores to keep them on their own. A graph finding the pool busy with another caller,
+// an offline copy for instance, simply runs its block alone.
+public class GraphWorkerPool implements AutoCloseable {
+	
+	// Covers the gap between two nodes of one block, not the gap between blocks
+	private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+	private static final long JOIN_MILLIS = 100;
+	
+	private final Thread[] workers;
+	private final AtomicIntegerArray parked;
+	// Held by the caller whose block the workers are helping with
+	private final AtomicBoolean owned;
+	// Workers inside a block, the owner waits for none before it resets the graph
+	private final AtomicInteger helpers;
+	
+	private volatile EffectGraph task;
+	private volatile long generation;
+	private volatile boolean running;
+	
+	public GraphWorkerPool(int workerCount) {
+		this.workers = new Thread[workerCount];
+		this.parked = new AtomicIntegerArray(workerCount);
+		this.owned = new AtomicBoolean();
+		this.helpers = new AtomicInteger();
+		this.running = true;
+		
+		for (int i = 0; i < workerCount; i++) {
+			int index = i;
+			Thread worker = new Thread(() -> work(index), "effect-graph-" + i);
+			worker.setPriority(Thread.MAX_PRIORITY);
+			worker.setDaemon(true);
+			workers[i] = worker;
+			worker.start();
+		}
+	}
+	
+	// One less than the cores, the audio thread takes the last one
+	public static GraphWorkerPool forAvailableCores() {
+		return new GraphWorkerPool(Math.max(0, Runtime.getRuntime().availableProcessors() - 1));
+	}
+	
+	public int getWorkerCount() {
+		return workers.length;
+	}
+	
+	// False when the pool is already serving another caller
+	boolean begin(EffectGraph graph) {
+		if (!running || !owned.compareAndSet(false, true)) {
+			return false;
+		}
+		
+		task = graph;
+		generation++;
+		for (int i = 0; i < workers.length; i++) {
+			if (parked.get(i) == 1) {
+				LockSupport.unpark(workers[i]);
+			}
+		}
+		return true;
+	}
+	
+	// Returns once every worker has left the block
+	void end() {
+		task = null;
+		while (helpers.get() > 0) {
+			Thread.onSpinWait();
+		}
+		owned.set(false);
+	}
+	
+	@Override
+	public void close() {
+		running = false;
+		for (Thread worker : workers) {
+			LockSupport.unpark(worker);
+		}
+		for (Thread worker : workers) {
+			try {
+				worker.join(JOIN_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+	
+	private void work(int index) {
+		long seen = 0;
+		while (running) {
+			long current = generation;
+			if (current == seen) {
+				idle(index, seen);
+				continue;
+			}
+			seen = current;
+			
+			// Counted before the task is read, so end() either waits for this worker or it sees null
+			helpers.incrementAndGet();
+			try {
+				EffectGraph graph = task;
+				if (graph != null) {
+					graph.help();
+				}
+			} finally {
+				helpers.decrementAndGet();
+			}
+		}
+	}
+	
+	private void idle(int index, long seen) {
+		long deadline = System.nanoTime() + SPIN_NANOS;
+		while (generation == seen && running) {
+			if (System.nanoTime() < deadline) {
+				Thread.onSpinWait();
+				continue;
+			}
+			// Flagged before the last look, so begin() either sees the flag or this sees the block
+			parked.set(index, 1);
+			if (generation == seen && running) {
+				LockSupport.park(this);
+			}
+			parked.set(index, 0);
+		}
+	}
+	
+}
@@ -6,18 +6,28 @@ import net.mchaidir.effectpi.effect.EffectBase;
 import net.mchaidir.effectpi.common.TwistEventListener;
 
 import java.util.Map;
-import java.util.concurrent.ScheduledExecutorService;
 
 @RequiredArgsConstructor
 public class Clean extends EffectBase {
 	
-	public Clean(Map<Twist, TwistEventListener> twistMap,
-							 ScheduledExecutorService scheduledExecutorService) {
-		super(scheduledExecutorService);
+	public Clean(Map<Twist, TwistEventListener> twistMap) {
+		twistMap.forEach(this::registerTwist);
+	}
+	
+	@Override
+	protected EffectBase createCopy() {
+		return new Clean(Map.of());
 	}
 	
 	public int applyEffect(int inputSignal) {
 		return inputSignal;
 	}
 	
+	@Override
+	public void process(float[] in, float[] out, int frames) {
+		if (in != out) {
+			System.arraycopy(in, 0, out, 0, frames);
+		}
+	}
+	
 }
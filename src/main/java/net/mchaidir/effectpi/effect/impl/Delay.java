@@ -0,0 +1,222 @@
+package net.mchaidir.effectpi.effect.impl;
+
+import com.sparkfun.qwiic.twist.Twist;
+import net.mchaidir.effectpi.common.LayeredTwistEventListener;
+import net.mchaidir.effectpi.common.ParameterStore;
+import net.mchaidir.effectpi.common.TwistEventListener;
+import net.mchaidir.effectpi.dsp.Kernels;
+import net.mchaidir.effectpi.dsp.OnePole;
+import net.mchaidir.effectpi.dsp.SmoothedValue;
+import net.mchaidir.effectpi.dsp.SmoothingType;
+import net.mchaidir.effectpi.effect.EffectBase;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+// Echo, chorus and flanger on one circular buffer. The buffer is sized once to a power of two
+// covering the longest time plus modulation, so the write head wraps with a mask and nothing is
+// ever resized. The read head sits a fractional number of frames behind it and is read with
+// 4-point Hermite interpolation, which keeps modulated and gliding taps free of zipper noise.
+// The tone filter sits inside the feedback loop, every repeat passes through it once more.
+public class Delay extends EffectBase {
+	
+	private final int sampleRate;
+	
+	private static final int CHUNK_FRAMES = 256;
+	private static final double SMOOTHING_MILLIS = 20.0;
+	// Time changes glide like a tape machine rather than jump, which would click
+	private static final double TIME_GLIDE_MILLIS = 150.0;
+	public static final double MAX_MODULATION_DEPTH_MILLIS = 10.0;
+	// Hermite reads one frame newer than the integer tap, which must not be the write head
+	private static final float MIN_DELAY_FRAMES = 2f;
+	
+	private final ParameterStore<DelayParameters> parameterStore;
+	private DelayParameters appliedParameters;
+	
+	private final float[] buffer;
+	private final int mask;
+	private int writeIndex;
+	
+	private final SmoothedValue delayFrames;
+	private final SmoothedValue feedback;
+	private final SmoothedValue mix;
+	private final OnePole toneFilter;
+	
+	// Quadrature oscillator, rotated once per frame, renormalised once per chunk
+	private double lfoSin;
+	private double lfoCos;
+	private double lfoRotationSin;
+	private double lfoRotationCos;
+	private float depthFrames;
+	
+	private final float[] timeRamp;
+	private final float[] mixRamp;
+	private final float[] wetBuffer;
+	private final float[] singleSample;
+	
+	public Delay(Twist delayTwist, int sampleRate) {
+		this(Map.of(), sampleRate);
+		bindTwists(delayTwist);
+	}
+	
+	@Override
+	public void bindTwists(Twist... twists) {
+		if (twists.length < 1) {
+			return;
+		}
+		registerTwist(twists[0], new LayeredTwistEventListener(new TwistEventListener[] {
+				new DelayFeedbackTwistEventListener(this),
+				new DelayToneTwistEventListener(this),
+				new DelayTimeTwistEventListener(this),
+				new DelayMixTwistEventListener(this)
+		}));
+	}
+	
+	public Delay(Map<Twist, TwistEventListener> twistMap, int sampleRate) {
+		this(twistMap, sampleRate, DelayParameters.defaults());
+	}
+	
+	// Starts settled on the given parameters rather than ramping towards them
+	public Delay(Map<Twist, TwistEventListener> twistMap, int sampleRate, DelayParameters parameters) {
+		this.sampleRate = sampleRate;
+		this.parameterStore = new ParameterStore<>(parameters);
+		
+		double maxMillis = DelayParameters.MAX_TIME_MILLIS + MAX_MODULATION_DEPTH_MILLIS;
+		int maxFrames = (int) Math.ceil(maxMillis * sampleRate / 1000.0) + 4;
+		this.buffer = new float[Integer.highestOneBit(maxFrames - 1) << 1];
+		this.mask = buffer.length - 1;
+		
+		this.delayFrames = new SmoothedValue(SmoothingType.LINEAR, sampleRate, TIME_GLIDE_MILLIS, 0f);
+		this.feedback = new SmoothedValue(SmoothingType.LINEAR, sampleRate, SMOOTHING_MILLIS, 0f);
+		this.mix = new SmoothedValue(SmoothingType.LINEAR, sampleRate, SMOOTHING_MILLIS, 0f);
+		this.toneFilter = new OnePole();
+		this.lfoCos = 1.0;
+		
+		this.timeRamp = new float[CHUNK_FRAMES];
+		this.mixRamp = new float[CHUNK_FRAMES];
+		this.wetBuffer = new float[CHUNK_FRAMES];
+		this.singleSample = new float[1];
+		
+		// Ambience rather than tone, the first thing to go under overload
+		setEssential(false);
+		
+		retarget(parameters);
+		delayFrames.reset(delayFrames.getTarget());
+		feedback.reset(feedback.getTarget());
+		mix.reset(mix.getTarget());
+		twistMap.forEach(this::registerTwist);
+	}
+	
+	public DelayParameters getParameters() {
+		return parameterStore.peek();
+	}
+	
+	// Called from control threads, the audio thread sees the result at its next block
+	public void updateParameters(UnaryOperator<DelayParameters> updater) {
+		parameterStore.update(updater);
+	}
+	
+	@Override
+	public long getPendingParameterUpdates() {
+		return parameterStore.getPendingUpdates();
+	}
+	
+	// Drops the echoes still in the line and the feedback filter's memory
+	@Override
+	public void reset() {
+		Arrays.fill(buffer, 0f);
+		toneFilter.reset();
+	}
+	
+	@Override
+	protected EffectBase createCopy() {
+		return new Delay(Map.of(), sampleRate, parameterStore.peek());
+	}
+	
+	public int applyEffect(int inputSignal) {
+		singleSample[0] = inputSignal / SAMPLE_SCALE;
+		process(singleSample, singleSample, 1);
+		return Math.round(singleSample[0] * SAMPLE_SCALE);
+	}
+	
+	@Override
+	public void process(float[] in, float[] out, int frames) {
+		DelayParameters parameters = parameterStore.acquire();
+		if (parameters != appliedParameters) {
+			retarget(parameters);
+		}
+		
+		for (int offset = 0; offset < frames; offset += CHUNK_FRAMES) {
+			processChunk(in, out, offset, Math.min(CHUNK_FRAMES, frames - offset));
+		}
+	}
+	
+	private void retarget(DelayParameters parameters) {
+		delayFrames.setTarget((float) (parameters.getTimeMillis() * sampleRate / 1000.0));
+		// Presets and updateParameters bypass the knobs' limits, and feedback past unity would run
+		// the loop up to infinity and leave NaN in the line
+		float maxFeedback = (float) DelayParameters.MAX_FEEDBACK_PERCENT / DelayParameters.MAX_PERCENT;
+		feedback.setTarget(Math.max(0f, Math.min(parameters.getFeedback(), maxFeedback)));
+		mix.setTarget(Math.max(0f, Math.min(parameters.getMix(), 1f)));
+		toneFilter.setLowPass(sampleRate, parameters.getToneHz());
+		
+		double depthMillis = Math.max(0.0, Math.min(parameters.getModulationDepthMillis(), MAX_MODULATION_DEPTH_MILLIS));
+		depthFrames = (float) (depthMillis * sampleRate / 1000.0);
+		double rotation = 2.0 * Math.PI * Math.max(0.0, parameters.getModulationRateHz()) / sampleRate;
+		lfoRotationSin = Math.sin(rotation);
+		lfoRotationCos = Math.cos(rotation);
+		appliedParameters = parameters;
+	}
+	
+	private void processChunk(float[] in, float[] out, int offset, int frames) {
+		float feedback = this.feedback.advance(frames);
+		delayFrames.fill(timeRamp, frames);
+		mix.fill(mixRamp, frames);
+		
+		float maxDelay = mask - 2;
+		float depthFrames = this.depthFrames;
+		double lfoSin = this.lfoSin;
+		double lfoCos = this.lfoCos;
+		int writeIndex = this.writeIndex;
+		for (int i = 0; i < frames; i++) {
+			// The tap swings to either side of the set time, never past the write head
+			float delay = timeRamp[i] + depthFrames * (float) lfoSin;
+			delay = Math.max(MIN_DELAY_FRAMES, Math.min(delay, maxDelay));
+			double rotatedSin = lfoSin * lfoRotationCos + lfoCos * lfoRotationSin;
+			lfoCos = lfoCos * lfoRotationCos - lfoSin * lfoRotationSin;
+			lfoSin = rotatedSin;
+			
+			float wet = read(writeIndex, delay);
+			buffer[writeIndex] = in[offset + i] + feedback * toneFilter.process(wet);
+			writeIndex = (writeIndex + 1) & mask;
+			wetBuffer[i] = wet;
+		}
+		this.writeIndex = writeIndex;
+		
+		// The feedback loop is recursive, the mix is not and runs as a kernel
+		Kernels.blend(in, offset, wetBuffer, 0, mixRamp, out, offset, frames);
+		
+		// Rounding slowly drifts the oscillator off the unit circle
+		double norm = 1.0 / Math.sqrt(lfoSin * lfoSin + lfoCos * lfoCos);
+		this.lfoSin = lfoSin * norm;
+		this.lfoCos = lfoCos * norm;
+	}
+	
+	// Tap delay frames behind the write head, between the frames either side of it
+	private float read(int writeIndex, float delay) {
+		int whole = (int) delay;
+		float fraction = delay - whole;
+		int tap = writeIndex - whole;
+		float newer = buffer[(tap + 1) & mask];
+		float at = buffer[tap & mask];
+		float older = buffer[(tap - 1) & mask];
+		float oldest = buffer[(tap - 2) & mask];
+		
+		float c1 = 0.5f * (older - newer);
+		float c2 = newer - 2.5f * at + 2f * older - 0.5f * oldest;
+		float c3 = 0.5f * (oldest - newer) + 1.5f * (at - older);
+		return ((c3 * fraction + c2) * fraction + c1) * fraction + at;
+	}
+	
+}
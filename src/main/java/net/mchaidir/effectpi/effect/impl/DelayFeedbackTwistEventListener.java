@@ -0,0 +1,22 @@
+package net.mchaidir.effectpi.effect.impl;
+
+import net.mchaidir.effectpi.common.TwistEventListener;
+
+public class DelayFeedbackTwistEventListener implements TwistEventListener {
+	
+	private final Delay delay;
+	
+	public DelayFeedbackTwistEventListener(Delay delay) {
+		this.delay = delay;
+	}
+	
+	@Override
+	public void onButtonPressed() {
+		
+	}
+	
+	@Override
+	public void onEncoderTurned(int encoderDelta) {
+		delay.updateParameters(parameters -> parameters.adjustFeedbackPercent(encoderDelta));
+	}
+}
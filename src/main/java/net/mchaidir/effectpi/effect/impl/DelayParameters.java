@@ -0,0 +1,90 @@
+package net.mchaidir.effectpi.effect.impl;
+
+import lombok.Builder;
+import lombok.Value;
+import lombok.With;
+
+@Value
+@With
+@Builder(toBuilder = true)
+public class DelayParameters {
+	
+	public static final int MAX_PERCENT = 100;
+	// Beyond this the feedback loop no longer dies away on its own
+	public static final int MAX_FEEDBACK_PERCENT = 95;
+	public static final int MIN_TIME_MILLIS = 1;
+	public static final int MAX_TIME_MILLIS = 2000;
+	public static final int MIN_TONE_HZ = 200;
+	public static final int MAX_TONE_HZ = 20000;
+	
+	@Builder.Default
+	int timeMillis = 350;
+	@Builder.Default
+	int feedbackPercent = 35;
+	@Builder.Default
+	int mixPercent = 30;
+	// Low-pass inside the feedback loop, every repeat gets darker
+	@Builder.Default
+	int toneHz = 4000;
+	
+	// Sweeps the read head around timeMillis, 0 depth is a plain echo
+	@Builder.Default
+	double modulationRateHz = 0.5;
+	@Builder.Default
+	double modulationDepthMillis = 0.0;
+	
+	public static DelayParameters defaults() {
+		return builder().build();
+	}
+	
+	public static DelayParameters chorus() {
+		return builder()
+				.timeMillis(20)
+				.feedbackPercent(0)
+				.mixPercent(50)
+				.toneHz(MAX_TONE_HZ)
+				.modulationRateHz(0.8)
+				.modulationDepthMillis(3.0)
+				.build();
+	}
+	
+	public static DelayParameters flanger() {
+		return builder()
+				.timeMillis(3)
+				.feedbackPercent(60)
+				.mixPercent(50)
+				.toneHz(MAX_TONE_HZ)
+				.modulationRateHz(0.25)
+				.modulationDepthMillis(2.0)
+				.build();
+	}
+	
+	public float getFeedback() {
+		return (float) feedbackPercent / MAX_PERCENT;
+	}
+	
+	public float getMix() {
+		return (float) mixPercent / MAX_PERCENT;
+	}
+	
+	public DelayParameters adjustTimeMillis(int deltaMillis) {
+		return withTimeMillis(clamp(timeMillis + deltaMillis, MIN_TIME_MILLIS, MAX_TIME_MILLIS));
+	}
+	
+	public DelayParameters adjustFeedbackPercent(int delta) {
+		return withFeedbackPercent(clamp(feedbackPercent + delta, 0, MAX_FEEDBACK_PERCENT));
+	}
+	
+	public DelayParameters adjustMixPercent(int delta) {
+		return withMixPercent(clamp(mixPercent + delta, 0, MAX_PERCENT));
+	}
+	
+	public DelayParameters adjustToneHz(int deltaHz) {
+		return withToneHz(clamp(toneHz + deltaHz, MIN_TONE_HZ, MAX_TONE_HZ));
+	}
+	
+	private static int clamp(int value, int min, int max) {
+		return Math.max(min, Math.min(value, max));
+	}
+	
+}
@@ -0,0 +1,24 @@
+package net.mchaidir.effectpi.effect.impl;
+
+import net.mchaidir.effectpi.common.TwistEventListener;
+
+public class DelayTimeTwistEventListener implements TwistEventListener {
+	
+	private static final int STEP_MILLIS = 10;
+	
+	private final Delay delay;
+	
+	public DelayTimeTwistEventListener(Delay delay) {
+		this.delay = delay;
+	}
+	
+	@Override
+	public void onButtonPressed() {
+		
+	}
+	
+	@Override
+	public void onEncoderTurned(int encoderDelta) {
+		delay.updateParameters(parameters -> parameters.adjustTimeMillis(encoderDelta * STEP_MILLIS));
+	}
+}
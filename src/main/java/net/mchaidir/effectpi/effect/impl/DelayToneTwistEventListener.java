@@ -0,0 +1,24 @@
+package net.mchaidir.effectpi.effect.impl;
+
+import net.mchaidir.effectpi.common.TwistEventListener;
+
+public class DelayToneTwistEventListener implements TwistEventListener {
+	
+	private static final int STEP_HZ = 100;
+	
+	private final Delay delay;
+	
+	public DelayToneTwistEventListener(Delay delay) {
+		this.delay = delay;
+	}
+	
+	@Override
+	public void onButtonPressed() {
+		
+	}
+	
+	@Override
+	public void onEncoderTurned(int encoderDelta) {
+		delay.updateParameters(parameters -> parameters.adjustToneHz(encoderDelta * STEP_HZ));
+	}
+}
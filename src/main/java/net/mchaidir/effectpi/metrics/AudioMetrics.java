@@ -0,0 +1,216 @@
+package net.mchaidir.effectpi.metrics;
+
+import net.mchaidir.effectpi.audio.AudioEngine;
+import net.mchaidir.effectpi.control.ControlSurface;
+import net.mchaidir.effectpi.effect.EffectBase;
+import net.mchaidir.effectpi.effect.EffectChain;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Collects what the engine, its current chain and the control surface record, for JMX and for a
+// periodic log line. Only reads the histograms, so it costs the audio thread nothing; the chain
+// is looked up on every read and follows preset swaps, once per line for the log so every column
+// comes from the same chain.
+public class AudioMetrics implements AudioMetricsMXBean, AutoCloseable {
+	
+	public static final String OBJECT_NAME = "net.mchaidir.effectpi:type=AudioMetrics";
+	
+	private final AudioEngine audioEngine;
+	// Null when there is no control surface
+	private final ControlSurface controlSurface;
+	
+	private ScheduledExecutorService logExecutor;
+	
+	public AudioMetrics(AudioEngine audioEngine, ControlSurface controlSurface) {
+		this.audioEngine = audioEngine;
+		this.controlSurface = controlSurface;
+	}
+	
+	public void register() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+	}
+	
+	// Prints formatLine() to stdout every period until closed
+	public synchronized void startLogging(long periodSeconds) {
+		if (logExecutor != null) {
+			return;
+		}
+		
+		logExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "audio-metrics");
+			thread.setPriority(Thread.MIN_PRIORITY);
+			thread.setDaemon(true);
+			return thread;
+		});
+		logExecutor.scheduleAtFixedRate(() -> System.out.println(formatLine()),
+				periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+	
+	@Override
+	public synchronized void close() {
+		if (logExecutor != null) {
+			logExecutor.shutdownNow();
+			logExecutor = null;
+		}
+	}
+	
+	// One line, chain percentiles against the budget, then the slowest part of each effect
+	public String formatLine() {
+		EffectChain effectChain = audioEngine.getEffectChain();
+		StringBuilder line = new StringBuilder(String.format(Locale.ROOT,
+				"audio: %d periods, %d xruns, %d over budget, %s, chain p50 %s p99 %s p99.9 %s max %s of %s",
+				getProcessedPeriods(), getXrunCount(), getOverBudgetPeriods(), effectChain.getDegradationTier(),
+				micros(getChainP50Nanos()), micros(getChainP99Nanos()), micros(getChainP999Nanos()),
+				micros(getChainMaxNanos()), micros(getBudgetNanos())));
+		
+		String[] names = effectNames(effectChain);
+		long[] p99 = effectP99Nanos(effectChain);
+		long[] max = effectMaxNanos(effectChain);
+		for (int i = 0; i < names.length; i++) {
+			line.append(String.format(Locale.ROOT, ", %s p99 %s max %s", names[i], micros(p99[i]), micros(max[i])));
+		}
+		
+		if (controlSurface != null) {
+			line.append(String.format(Locale.ROOT, ", i2c p99 %s max %s, %d queued, %d failed, %d dropped, %d disconnected",
+					micros(getI2cTransactionP99Nanos()), micros(getI2cTransactionMaxNanos()), getControlQueueDepth(),
+					getI2cFailedTransactions(), getI2cDroppedTransactions(), getI2cDisconnectedDevices()));
+		}
+		line.append(", ").append(effectChain.getPendingParameterUpdates()).append(" pending updates");
+		return line.toString();
+	}
+	
+	@Override
+	public long getBudgetNanos() {
+		return audioEngine.getProcessingHistogram().getBudgetNanos();
+	}
+	
+	@Override
+	public long getProcessedPeriods() {
+		return audioEngine.getProcessedPeriods();
+	}
+	
+	@Override
+	public long getXrunCount() {
+		return audioEngine.getXrunCount();
+	}
+	
+	@Override
+	public long getOverBudgetPeriods() {
+		return audioEngine.getProcessingHistogram().getOverBudgetCount();
+	}
+	
+	@Override
+	public String getDegradationTier() {
+		return audioEngine.getEffectChain().getDegradationTier().name();
+	}
+	
+	@Override
+	public long getChainP50Nanos() {
+		return audioEngine.getProcessingHistogram().getPercentileNanos(50.0);
+	}
+	
+	@Override
+	public long getChainP99Nanos() {
+		return audioEngine.getProcessingHistogram().getPercentileNanos(99.0);
+	}
+	
+	@Override
+	public long getChainP999Nanos() {
+		return audioEngine.getProcessingHistogram().getPercentileNanos(99.9);
+	}
+	
+	@Override
+	public long getChainMaxNanos() {
+		return audioEngine.getProcessingHistogram().getMaxNanos();
+	}
+	
+	@Override
+	public String[] getEffectNames() {
+		return effectNames(audioEngine.getEffectChain());
+	}
+	
+	@Override
+	public long[] getEffectP99Nanos() {
+		return effectP99Nanos(audioEngine.getEffectChain());
+	}
+	
+	@Override
+	public long[] getEffectMaxNanos() {
+		return effectMaxNanos(audioEngine.getEffectChain());
+	}
+	
+	@Override
+	public long getI2cTransactionP99Nanos() {
+		return controlSurface == null ? 0 : controlSurface.getBus().getTransactionHistogram().getPercentileNanos(99.0);
+	}
+	
+	@Override
+	public long getI2cTransactionMaxNanos() {
+		return controlSurface == null ? 0 : controlSurface.getBus().getTransactionHistogram().getMaxNanos();
+	}
+	
+	@Override
+	public long getI2cFailedTransactions() {
+		return controlSurface == null ? 0 : controlSurface.getBus().getFailedTransactions();
+	}
+	
+	@Override
+	public long getI2cDroppedTransactions() {
+		return controlSurface == null ? 0 : controlSurface.getBus().getDroppedTransactions();
+	}
+	
+	@Override
+	public int getI2cDisconnectedDevices() {
+		return controlSurface == null ? 0 : controlSurface.getBus().getDisconnectedDevices();
+	}
+	
+	@Override
+	public int getControlQueueDepth() {
+		return controlSurface == null ? 0 : controlSurface.getQueuedDevices();
+	}
+	
+	@Override
+	public long getPendingParameterUpdates() {
+		EffectChain effectChain = audioEngine.getEffectChain();
+		return effectChain.getPendingParameterUpdates();
+	}
+	
+	private static String[] effectNames(EffectChain effectChain) {
+		List<EffectBase> effects = effectChain.getEffects();
+		String[] names = new String[effects.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = effects.get(i).getClass().getSimpleName();
+		}
+		return names;
+	}
+	
+	private static long[] effectP99Nanos(EffectChain effectChain) {
+		List<LatencyHistogram> histograms = effectChain.getEffectHistograms();
+		long[] values = new long[histograms.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = histograms.get(i).getPercentileNanos(99.0);
+		}
+		return values;
+	}
+	
+	private static long[] effectMaxNanos(EffectChain effectChain) {
+		List<LatencyHistogram> histograms = effectChain.getEffectHistograms();
+		long[] values = new long[histograms.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = histograms.get(i).getMaxNanos();
+		}
+		return values;
+	}
+	
+	private static String micros(long nanos) {
+		return String.format(Locale.ROOT, "%.1fus", nanos / 1000.0);
+	}
+	
+}
@@ -0,0 +1,45 @@
+package net.mchaidir.effectpi.metrics;
+
+// Read-only view of the audio path for JMX clients such as jconsole or a Prometheus exporter.
+// Durations are nanoseconds, percentiles are over the whole run.
+public interface AudioMetricsMXBean {
+	
+	long getBudgetNanos();
+	
+	long getProcessedPeriods();
+	
+	long getXrunCount();
+	
+	long getOverBudgetPeriods();
+	
+	String getDegradationTier();
+	
+	long getChainP50Nanos();
+	
+	long getChainP99Nanos();
+	
+	long getChainP999Nanos();
+	
+	long getChainMaxNanos();
+	
+	String[] getEffectNames();
+	
+	long[] getEffectP99Nanos();
+	
+	long[] getEffectMaxNanos();
+	
+	long getI2cTransactionP99Nanos();
+	
+	long getI2cTransactionMaxNanos();
+	
+	long getI2cFailedTransactions();
+	
+	long getI2cDroppedTransactions();
+	
+	int getI2cDisconnectedDevices();
+	
+	int getControlQueueDepth();
+	
+	long getPendingParameterUpdates();
+	
+}
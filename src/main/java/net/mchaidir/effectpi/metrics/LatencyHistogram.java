@@ -0,0 +1,104 @@
+package net.mchaidir.effectpi.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram of nanosecond durations in the style of HdrHistogram: values below 32 get
+// a bucket each, above that every power of two is split into 32 buckets, so any recorded value is
+// reported within about 3 %. One thread records, with plain reads and release writes and no
+// allocation; any thread may read, and sees counts that are at worst a few records behind.
+public class LatencyHistogram {
+	
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// Up to 2^40 ns, about 18 minutes, anything longer lands in the last bucket
+	private static final int MAX_MAGNITUDE = 40;
+	private static final int BUCKETS = SUB_BUCKETS + (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+	
+	// Slots of totals
+	private static final int COUNT = 0;
+	private static final int MAX = 1;
+	private static final int OVER_BUDGET = 2;
+	
+	private final AtomicLongArray counts;
+	private final AtomicLongArray totals;
+	
+	private final long budgetNanos;
+	
+	// Recordings above budgetNanos are also counted as over budget, 0 disables that count
+	public LatencyHistogram(long budgetNanos) {
+		this.counts = new AtomicLongArray(BUCKETS);
+		this.totals = new AtomicLongArray(3);
+		this.budgetNanos = budgetNanos;
+	}
+	
+	// Recording thread only
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		int bucket = bucketOf(value);
+		counts.setRelease(bucket, counts.getPlain(bucket) + 1);
+		totals.setRelease(COUNT, totals.getPlain(COUNT) + 1);
+		if (value > totals.getPlain(MAX)) {
+			totals.setRelease(MAX, value);
+		}
+		if (budgetNanos > 0 && value > budgetNanos) {
+			totals.setRelease(OVER_BUDGET, totals.getPlain(OVER_BUDGET) + 1);
+		}
+	}
+	
+	public long getBudgetNanos() {
+		return budgetNanos;
+	}
+	
+	public long getCount() {
+		return totals.getAcquire(COUNT);
+	}
+	
+	public long getMaxNanos() {
+		return totals.getAcquire(MAX);
+	}
+	
+	public long getOverBudgetCount() {
+		return totals.getAcquire(OVER_BUDGET);
+	}
+	
+	// Upper edge of the bucket holding the given percentile, 0 when nothing was recorded
+	public long getPercentileNanos(double percentile) {
+		long total = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			total += counts.getAcquire(bucket);
+		}
+		if (total == 0) {
+			return 0;
+		}
+		
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += counts.getAcquire(bucket);
+			if (seen >= rank) {
+				return Math.min(upperEdgeOf(bucket), getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+	
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int magnitude = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_MAGNITUDE);
+		int shift = magnitude - SUB_BUCKET_BITS;
+		int subBucket = (int) Math.min((value >>> shift) - SUB_BUCKETS, SUB_BUCKETS - 1);
+		return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+	}
+	
+	static long upperEdgeOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+		int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+	}
+	
+}
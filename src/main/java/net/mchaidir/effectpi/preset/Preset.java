@@ -0,0 +1,268 @@
+package net.mchaidir.effectpi.preset;
+
+import lombok.Getter;
+import net.mchaidir.effectpi.dsp.ClippingCurve;
+import net.mchaidir.effectpi.dsp.ConvolutionKernel;
+import net.mchaidir.effectpi.dsp.EnvelopeDetector;
+import net.mchaidir.effectpi.dsp.OversamplingFactor;
+import net.mchaidir.effectpi.effect.EffectBase;
+import net.mchaidir.effectpi.effect.EffectChain;
+import net.mchaidir.effectpi.effect.cabinet.CabinetImpulse;
+import net.mchaidir.effectpi.effect.cabinet.CabinetSim;
+import net.mchaidir.effectpi.effect.compressor.Compressor;
+import net.mchaidir.effectpi.effect.compressor.CompressorParameters;
+import net.mchaidir.effectpi.effect.distortion.Distortion;
+import net.mchaidir.effectpi.effect.distortion.DistortionParameters;
+import net.mchaidir.effectpi.effect.impl.Clean;
+import net.mchaidir.effectpi.effect.impl.Delay;
+import net.mchaidir.effectpi.effect.impl.DelayParameters;
+import net.mchaidir.effectpi.sim.WavFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+// An effect chain and the parameters it starts with, read from a properties file such as
+//   effects=distortion
+//   distortion.distortionValue=40
+//   distortion.clippingCurve=FOLDBACK
+// cabinet.impulse names a mono WAV relative to the preset file, without it the cabinet is synthetic.
+// bypass names effects that are in the chain but start disabled. Each effect type has one set of
+// parameters, so distortion, compressor and delay may each appear once; clean and cabinet, which
+// take none, may repeat, and their bypass is kept per position in the binary form. save writes the
+// compact binary form of PresetCodec, load reads either.
+// Effects built from a preset have no Twist bindings, PresetLoader hands them the knobs when it
+// swaps the chain in live.
+@Getter
+public class Preset {
+	
+	public static final String CLEAN = "clean";
+	public static final String DISTORTION = "distortion";
+	public static final String COMPRESSOR = "compressor";
+	public static final String DELAY = "delay";
+	public static final String CABINET = "cabinet";
+	
+	private static final String EFFECTS_KEY = "effects";
+	private static final String BYPASS_KEY = "bypass";
+	private static final String DISTORTION_PREFIX = DISTORTION + ".";
+	private static final String COMPRESSOR_PREFIX = COMPRESSOR + ".";
+	private static final String DELAY_PREFIX = DELAY + ".";
+	private static final String CABINET_IMPULSE_KEY = CABINET + ".impulse";
+	
+	private final List<String> effects;
+	// Parallel to effects
+	private final List<Boolean> bypassed;
+	private final DistortionParameters distortionParameters;
+	private final CompressorParameters compressorParameters;
+	private final DelayParameters delayParameters;
+	// Null for the synthetic cabinet
+	private final WavFile cabinetImpulse;
+	
+	public Preset(List<String> effects,
+								List<Boolean> bypassed,
+								DistortionParameters distortionParameters,
+								CompressorParameters compressorParameters,
+								DelayParameters delayParameters,
+								WavFile cabinetImpulse) {
+		if (bypassed.size() != effects.size()) {
+			throw new IllegalArgumentException(
+					"Bypass flags for " + bypassed.size() + " effects, the chain has " + effects.size());
+		}
+		Set<String> parameterised = new HashSet<>();
+		for (String effect : effects) {
+			if (!effect.equals(CLEAN) && !effect.equals(CABINET) && !parameterised.add(effect)) {
+				throw new IllegalArgumentException("More than one " + effect + ", they would share one parameter set");
+			}
+		}
+		this.effects = List.copyOf(effects);
+		this.bypassed = List.copyOf(bypassed);
+		this.distortionParameters = distortionParameters;
+		this.compressorParameters = compressorParameters;
+		this.delayParameters = delayParameters;
+		this.cabinetImpulse = cabinetImpulse;
+	}
+	
+	public static Preset defaults() {
+		return new Preset(List.of(DISTORTION), List.of(false), DistortionParameters.defaults(),
+				CompressorParameters.defaults(), DelayParameters.defaults(), null);
+	}
+	
+	public static Preset load(Path path) throws IOException {
+		try (InputStream input = new BufferedInputStream(Files.newInputStream(path))) {
+			if (PresetCodec.isEncoded(input)) {
+				return PresetCodec.read(input);
+			}
+			
+			Properties properties = new Properties();
+			properties.load(new InputStreamReader(input, StandardCharsets.UTF_8));
+			return fromProperties(properties, path);
+		}
+	}
+	
+	public void save(Path path) throws IOException {
+		try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(path))) {
+			PresetCodec.write(this, output);
+		}
+	}
+	
+	private static void checkEffect(String name) {
+		if (!name.equals(CLEAN) && !name.equals(DISTORTION) && !name.equals(COMPRESSOR)
+				&& !name.equals(DELAY) && !name.equals(CABINET)) {
+			throw new IllegalArgumentException("Unknown effect " + name);
+		}
+	}
+	
+	private static Preset fromProperties(Properties properties, Path path) throws IOException {
+		List<String> effects = parseNames(properties.getProperty(EFFECTS_KEY, DISTORTION));
+		Set<String> bypassedNames = Set.copyOf(parseNames(properties.getProperty(BYPASS_KEY, "")));
+		List<Boolean> bypassed = new ArrayList<>(effects.size());
+		for (String effect : effects) {
+			bypassed.add(bypassedNames.contains(effect));
+		}
+		
+		String impulse = properties.getProperty(CABINET_IMPULSE_KEY);
+		WavFile cabinetImpulse = impulse == null
+				? null
+				: WavFile.read(path.toAbsolutePath().resolveSibling(impulse.trim()));
+		return new Preset(effects, bypassed, parseDistortion(properties), parseCompressor(properties),
+				parseDelay(properties), cabinetImpulse);
+	}
+	
+	// In preset order, enabled unless bypassed
+	public EffectChain createChain(int sampleRate, int maxFrames) {
+		List<EffectBase> chain = new ArrayList<>();
+		ConvolutionKernel cabinetKernel = null;
+		for (int i = 0; i < effects.size(); i++) {
+			EffectBase instance = switch (effects.get(i)) {
+				case CLEAN -> new Clean(Map.of());
+				case COMPRESSOR -> new Compressor(Map.of(), sampleRate, compressorParameters);
+				case DELAY -> new Delay(Map.of(), sampleRate, delayParameters);
+				case CABINET -> {
+					// Transformed once, however many cabinets the chain holds
+					if (cabinetKernel == null) {
+						cabinetKernel = createCabinetKernel(sampleRate, maxFrames);
+					}
+					yield new CabinetSim(Map.of(), cabinetKernel);
+				}
+				default -> new Distortion(Map.of(), sampleRate, distortionParameters);
+			};
+			instance.setEnabled(!bypassed.get(i));
+			chain.add(instance);
+		}
+		return new EffectChain(chain, maxFrames);
+	}
+	
+	private static List<String> parseNames(String value) {
+		List<String> names = new ArrayList<>();
+		for (String effect : value.split(",")) {
+			String name = effect.trim().toLowerCase();
+			if (name.isEmpty()) {
+				continue;
+			}
+			checkEffect(name);
+			names.add(name);
+		}
+		return names;
+	}
+	
+	private ConvolutionKernel createCabinetKernel(int sampleRate, int maxFrames) {
+		float[] impulse = cabinetImpulse == null
+				? CabinetImpulse.synthetic(sampleRate)
+				: CabinetImpulse.fromWav(cabinetImpulse, sampleRate);
+		return new ConvolutionKernel(impulse, CabinetSim.partitionFrames(maxFrames));
+	}
+	
+	private static DistortionParameters parseDistortion(Properties properties) {
+		DistortionParameters.DistortionParametersBuilder builder = DistortionParameters.defaults().toBuilder();
+		for (String key : properties.stringPropertyNames()) {
+			if (!key.startsWith(DISTORTION_PREFIX)) {
+				continue;
+			}
+			
+			String value = properties.getProperty(key).trim();
+			switch (key.substring(DISTORTION_PREFIX.length())) {
+				case "distortionValue" -> builder.distortionValue(Integer.parseInt(value));
+				case "volumeValue" -> builder.volumeValue(Integer.parseInt(value));
+				case "lowCutoffValue" -> builder.lowCutoffValue(Integer.parseInt(value));
+				case "midCutoffValue" -> builder.midCutoffValue(Integer.parseInt(value));
+				case "highCutoffValue" -> builder.highCutoffValue(Integer.parseInt(value));
+				case "bass" -> builder.bass(Double.parseDouble(value));
+				case "mid" -> builder.mid(Double.parseDouble(value));
+				case "treble" -> builder.treble(Double.parseDouble(value));
+				case "compressionRatio" -> builder.compressionRatio(Double.parseDouble(value));
+				case "compressionThreshold" -> builder.compressionThreshold(Integer.parseInt(value));
+				case "clippingCurve" -> builder.clippingCurve(ClippingCurve.valueOf(value.toUpperCase()));
+				case "clippingThreshold" -> builder.clippingThreshold(Integer.parseInt(value));
+				case "oversampling" -> builder.oversampling(OversamplingFactor.valueOf(value.toUpperCase()));
+				default -> throw new IllegalArgumentException("Unknown preset key " + key);
+			}
+		}
+		return builder.build();
+	}
+	
+	private static CompressorParameters parseCompressor(Properties properties) {
+		CompressorParameters.CompressorParametersBuilder builder = CompressorParameters.defaults().toBuilder();
+		for (String key : properties.stringPropertyNames()) {
+			if (!key.startsWith(COMPRESSOR_PREFIX)) {
+				continue;
+			}
+			
+			String value = properties.getProperty(key).trim();
+			switch (key.substring(COMPRESSOR_PREFIX.length())) {
+				case "thresholdDb" -> builder.thresholdDb(Double.parseDouble(value));
+				case "ratio" -> builder.ratio(Double.parseDouble(value));
+				case "kneeDb" -> builder.kneeDb(Double.parseDouble(value));
+				case "makeupDb" -> builder.makeupDb(Double.parseDouble(value));
+				case "attackMillis" -> builder.attackMillis(Double.parseDouble(value));
+				case "releaseMillis" -> builder.releaseMillis(Double.parseDouble(value));
+				case "lookAheadMillis" -> builder.lookAheadMillis(Double.parseDouble(value));
+				case "detector" -> builder.detector(EnvelopeDetector.valueOf(value.toUpperCase()));
+				case "rmsWindowMillis" -> builder.rmsWindowMillis(Double.parseDouble(value));
+				default -> throw new IllegalArgumentException("Unknown preset key " + key);
+			}
+		}
+		return builder.build();
+	}
+	
+	// delay.variant=chorus or flanger starts from that variant, the other keys then override it
+	private static DelayParameters parseDelay(Properties properties) {
+		String variant = properties.getProperty(DELAY_PREFIX + "variant", "echo").trim().toLowerCase();
+		DelayParameters.DelayParametersBuilder builder = switch (variant) {
+			case "echo" -> DelayParameters.defaults().toBuilder();
+			case "chorus" -> DelayParameters.chorus().toBuilder();
+			case "flanger" -> DelayParameters.flanger().toBuilder();
+			default -> throw new IllegalArgumentException("Unknown delay variant " + variant);
+		};
+		for (String key : properties.stringPropertyNames()) {
+			if (!key.startsWith(DELAY_PREFIX)) {
+				continue;
+			}
+			
+			String value = properties.getProperty(key).trim();
+			switch (key.substring(DELAY_PREFIX.length())) {
+				case "variant" -> { }
+				case "timeMillis" -> builder.timeMillis(Integer.parseInt(value));
+				case "feedbackPercent" -> builder.feedbackPercent(Integer.parseInt(value));
+				case "mixPercent" -> builder.mixPercent(Integer.parseInt(value));
+				case "toneHz" -> builder.toneHz(Integer.parseInt(value));
+				case "modulationRateHz" -> builder.modulationRateHz(Double.parseDouble(value));
+				case "modulationDepthMillis" -> builder.modulationDepthMillis(Double.parseDouble(value));
+				default -> throw new IllegalArgumentException("Unknown preset key " + key);
+			}
+		}
+		return builder.build();
+	}
+	
+}
@@ -0,0 +1,213 @@
+package net.mchaidir.effectpi.preset;
+
+import net.mchaidir.effectpi.dsp.ClippingCurve;
+import net.mchaidir.effectpi.dsp.EnvelopeDetector;
+import net.mchaidir.effectpi.dsp.OversamplingFactor;
+import net.mchaidir.effectpi.effect.compressor.CompressorParameters;
+import net.mchaidir.effectpi.effect.distortion.DistortionParameters;
+import net.mchaidir.effectpi.effect.impl.DelayParameters;
+import net.mchaidir.effectpi.sim.WavFile;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Binary preset: magic, version, the chain as one code and one flag byte per effect, then every
+// parameter of every effect in a fixed order and the cabinet impulse as 16-bit samples. A few
+// hundred bytes without an impulse, small enough to keep a whole bank on the SD card.
+public final class PresetCodec {
+	
+	private static final int MAGIC = 0x45505052;
+	private static final int VERSION = 1;
+	
+	private static final String[] EFFECT_CODES = {
+			Preset.CLEAN, Preset.DISTORTION, Preset.COMPRESSOR, Preset.DELAY, Preset.CABINET};
+	private static final int BYPASSED = 1;
+	// The count is one unsigned byte
+	private static final int MAX_EFFECTS = 255;
+	private static final float SAMPLE_SCALE = 32767f;
+	// Ten seconds at 192 kHz, far beyond any cabinet impulse, so a corrupt length fails cleanly
+	private static final int MAX_IMPULSE_SAMPLES = 192_000 * 10;
+	
+	private PresetCodec() {
+	}
+	
+	// Peeks at the magic, the stream must support mark
+	public static boolean isEncoded(InputStream input) throws IOException {
+		input.mark(4);
+		try {
+			byte[] magic = input.readNBytes(4);
+			return magic.length == 4
+					&& ((magic[0] & 0xFF) << 24 | (magic[1] & 0xFF) << 16 | (magic[2] & 0xFF) << 8 | magic[3] & 0xFF) == MAGIC;
+		} finally {
+			input.reset();
+		}
+	}
+	
+	public static void write(Preset preset, OutputStream output) throws IOException {
+		// Refused before anything is written, read would reject them
+		if (preset.getEffects().size() > MAX_EFFECTS) {
+			throw new IOException("Chain of " + preset.getEffects().size() + " effects is too long");
+		}
+		WavFile impulse = preset.getCabinetImpulse();
+		if (impulse != null && impulse.getSamples().length > MAX_IMPULSE_SAMPLES) {
+			throw new IOException("Impulse of " + impulse.getSamples().length + " samples is too long");
+		}
+		
+		DataOutputStream data = new DataOutputStream(output);
+		data.writeInt(MAGIC);
+		data.writeByte(VERSION);
+		
+		data.writeByte(preset.getEffects().size());
+		for (int i = 0; i < preset.getEffects().size(); i++) {
+			data.writeByte(effectCode(preset.getEffects().get(i)));
+			data.writeByte(preset.getBypassed().get(i) ? BYPASSED : 0);
+		}
+		
+		DistortionParameters distortion = preset.getDistortionParameters();
+		data.writeInt(distortion.getDistortionValue());
+		data.writeInt(distortion.getVolumeValue());
+		data.writeInt(distortion.getLowCutoffValue());
+		data.writeInt(distortion.getMidCutoffValue());
+		data.writeInt(distortion.getHighCutoffValue());
+		data.writeDouble(distortion.getBass());
+		data.writeDouble(distortion.getMid());
+		data.writeDouble(distortion.getTreble());
+		data.writeDouble(distortion.getCompressionRatio());
+		data.writeInt(distortion.getCompressionThreshold());
+		data.writeUTF(distortion.getClippingCurve().name());
+		data.writeInt(distortion.getClippingThreshold());
+		data.writeUTF(distortion.getOversampling().name());
+		
+		CompressorParameters compressor = preset.getCompressorParameters();
+		data.writeDouble(compressor.getThresholdDb());
+		data.writeDouble(compressor.getRatio());
+		data.writeDouble(compressor.getKneeDb());
+		data.writeDouble(compressor.getMakeupDb());
+		data.writeDouble(compressor.getAttackMillis());
+		data.writeDouble(compressor.getReleaseMillis());
+		data.writeDouble(compressor.getLookAheadMillis());
+		data.writeUTF(compressor.getDetector().name());
+		data.writeDouble(compressor.getRmsWindowMillis());
+		
+		DelayParameters delay = preset.getDelayParameters();
+		data.writeInt(delay.getTimeMillis());
+		data.writeInt(delay.getFeedbackPercent());
+		data.writeInt(delay.getMixPercent());
+		data.writeInt(delay.getToneHz());
+		data.writeDouble(delay.getModulationRateHz());
+		data.writeDouble(delay.getModulationDepthMillis());
+		
+		data.writeBoolean(impulse != null);
+		if (impulse != null) {
+			data.writeInt(impulse.getSampleRate());
+			data.writeInt(impulse.getSamples().length);
+			for (float sample : impulse.getSamples()) {
+				data.writeShort(Math.round(Math.max(-1f, Math.min(sample, 1f)) * SAMPLE_SCALE));
+			}
+		}
+		data.flush();
+	}
+	
+	public static Preset read(InputStream input) throws IOException {
+		DataInputStream data = new DataInputStream(input);
+		if (data.readInt() != MAGIC) {
+			throw new IOException("Not an encoded preset");
+		}
+		int version = data.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported preset version " + version);
+		}
+		
+		int count = data.readUnsignedByte();
+		List<String> effects = new ArrayList<>(count);
+		List<Boolean> bypassed = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int code = data.readUnsignedByte();
+			if (code >= EFFECT_CODES.length) {
+				throw new IOException("Unknown effect code " + code);
+			}
+			effects.add(EFFECT_CODES[code]);
+			bypassed.add((data.readUnsignedByte() & BYPASSED) != 0);
+		}
+		
+		DistortionParameters distortion = DistortionParameters.builder()
+				.distortionValue(data.readInt())
+				.volumeValue(data.readInt())
+				.lowCutoffValue(data.readInt())
+				.midCutoffValue(data.readInt())
+				.highCutoffValue(data.readInt())
+				.bass(data.readDouble())
+				.mid(data.readDouble())
+				.treble(data.readDouble())
+				.compressionRatio(data.readDouble())
+				.compressionThreshold(data.readInt())
+				.clippingCurve(readEnum(data, ClippingCurve.class))
+				.clippingThreshold(data.readInt())
+				.oversampling(readEnum(data, OversamplingFactor.class))
+				.build();
+		
+		CompressorParameters compressor = CompressorParameters.builder()
+				.thresholdDb(data.readDouble())
+				.ratio(data.readDouble())
+				.kneeDb(data.readDouble())
+				.makeupDb(data.readDouble())
+				.attackMillis(data.readDouble())
+				.releaseMillis(data.readDouble())
+				.lookAheadMillis(data.readDouble())
+				.detector(readEnum(data, EnvelopeDetector.class))
+				.rmsWindowMillis(data.readDouble())
+				.build();
+		
+		DelayParameters delay = DelayParameters.builder()
+				.timeMillis(data.readInt())
+				.feedbackPercent(data.readInt())
+				.mixPercent(data.readInt())
+				.toneHz(data.readInt())
+				.modulationRateHz(data.readDouble())
+				.modulationDepthMillis(data.readDouble())
+				.build();
+		
+		WavFile impulse = null;
+		if (data.readBoolean()) {
+			int sampleRate = data.readInt();
+			int length = data.readInt();
+			if (length < 0 || length > MAX_IMPULSE_SAMPLES) {
+				throw new IOException("Bad impulse length " + length);
+			}
+			float[] samples = new float[length];
+			for (int i = 0; i < samples.length; i++) {
+				samples[i] = data.readShort() / SAMPLE_SCALE;
+			}
+			impulse = new WavFile(sampleRate, samples);
+		}
+		try {
+			return new Preset(effects, bypassed, distortion, compressor, delay, impulse);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid preset", e);
+		}
+	}
+	
+	private static <E extends Enum<E>> E readEnum(DataInputStream data, Class<E> type) throws IOException {
+		String name = data.readUTF();
+		try {
+			return Enum.valueOf(type, name);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Unknown " + type.getSimpleName() + " " + name, e);
+		}
+	}
+	
+	private static int effectCode(String effect) {
+		for (int code = 0; code < EFFECT_CODES.length; code++) {
+			if (EFFECT_CODES[code].equals(effect)) {
+				return code;
+			}
+		}
+		throw new IllegalArgumentException("Unknown effect " + effect);
+	}
+	
+}
@@ -0,0 +1,102 @@
+package net.mchaidir.effectpi.preset;
+
+import net.mchaidir.effectpi.audio.AudioEngine;
+import net.mchaidir.effectpi.control.ControlSurface;
+import net.mchaidir.effectpi.effect.EffectChain;
+
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Switches the running engine to a preset without disturbing the audio thread. File reading,
+// impulse transforms and buffer allocation all happen on a background thread, and a throwaway
+// copy of the new chain is run hot until the JIT has compiled its paths, so the first period the
+// real chain plays runs at full speed. The engine then crossfades it in, and the control surface,
+// if there is one, hands its knobs to the new chain's effects.
+public class PresetLoader implements AutoCloseable {
+	
+	// Past the JIT's compile thresholds for every per-block loop
+	static final int WARMUP_BLOCKS = 10_000;
+	private static final float WARMUP_LEVEL = 0.25f;
+	
+	private final AudioEngine audioEngine;
+	// Null when nothing controls the engine live
+	private final ControlSurface controlSurface;
+	private final int sampleRate;
+	private final int periodSize;
+	private final ExecutorService loaderExecutor;
+	
+	public PresetLoader(AudioEngine audioEngine, int sampleRate, int periodSize) {
+		this(audioEngine, null, sampleRate, periodSize);
+	}
+	
+	public PresetLoader(AudioEngine audioEngine, ControlSurface controlSurface, int sampleRate, int periodSize) {
+		this.audioEngine = audioEngine;
+		this.controlSurface = controlSurface;
+		this.sampleRate = sampleRate;
+		this.periodSize = periodSize;
+		this.loaderExecutor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "preset-loader");
+			thread.setPriority(Thread.MIN_PRIORITY);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	// Completes with the new chain once it has been handed to the engine
+	public CompletableFuture<EffectChain> load(Path path) {
+		CompletableFuture<EffectChain> result = new CompletableFuture<>();
+		loaderExecutor.execute(() -> {
+			try {
+				result.complete(swapIn(Preset.load(path)));
+			} catch (Exception e) {
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+	
+	public CompletableFuture<EffectChain> apply(Preset preset) {
+		CompletableFuture<EffectChain> result = new CompletableFuture<>();
+		loaderExecutor.execute(() -> {
+			try {
+				result.complete(swapIn(preset));
+			} catch (Exception e) {
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+	
+	@Override
+	public void close() {
+		loaderExecutor.shutdownNow();
+	}
+	
+	private EffectChain swapIn(Preset preset) {
+		EffectChain chain = preset.createChain(sampleRate, periodSize);
+		// Compiled code is shared by every instance, the copy's state is simply dropped
+		warmUp(chain.copy(), periodSize);
+		audioEngine.swapChain(chain);
+		// Until now the knobs still drive the effects being faded out
+		if (controlSurface != null) {
+			controlSurface.replaceEffects(chain.getEffects());
+		}
+		return chain;
+	}
+	
+	static void warmUp(EffectChain chain, int frames) {
+		Random random = new Random(frames);
+		float[] in = new float[frames];
+		float[] out = new float[frames];
+		for (int block = 0; block < WARMUP_BLOCKS; block++) {
+			for (int i = 0; i < frames; i++) {
+				in[i] = (random.nextFloat() * 2f - 1f) * WARMUP_LEVEL;
+			}
+			chain.process(in, out, frames);
+		}
+	}
+	
+}
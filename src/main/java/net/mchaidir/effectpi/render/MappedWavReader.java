@@ -0,0 +1,71 @@
+package net.mchaidir.effectpi.render;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Streams a 16-bit PCM WAV file straight out of the page cache. The file is memory mapped
+// once and every block is deinterleaved from the mapping, nothing is copied through the heap.
+public class MappedWavReader implements AutoCloseable {
+	
+	private static final float SAMPLE_SCALE = 32767f;
+	
+	private final FileChannel channel;
+	@Getter
+	private final WavHeader header;
+	private final ShortBuffer samples;
+	
+	public MappedWavReader(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(path + " is too large to map in one piece");
+			}
+			
+			MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			this.header = WavHeader.parse(mapping);
+			mapping.position((int) header.getDataOffset());
+			mapping.limit((int) (header.getDataOffset() + header.getDataLength()));
+			this.samples = mapping.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	public int getChannels() {
+		return header.getChannels();
+	}
+	
+	public int getSampleRate() {
+		return header.getSampleRate();
+	}
+	
+	public long getFrames() {
+		return header.getFrames();
+	}
+	
+	// Reads up to frames frames of one channel starting at frame, returns the frames read.
+	// Absolute reads only, so any number of threads may read different channels or ranges at once.
+	public int read(int channel, long frame, float[] block, int frames) {
+		int channels = header.getChannels();
+		int available = (int) Math.max(0, Math.min(frames, getFrames() - frame));
+		int index = (int) (frame * channels) + channel;
+		for (int i = 0; i < available; i++, index += channels) {
+			block[i] = samples.get(index) / SAMPLE_SCALE;
+		}
+		return available;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+}
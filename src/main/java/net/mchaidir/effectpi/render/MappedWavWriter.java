@@ -0,0 +1,61 @@
+package net.mchaidir.effectpi.render;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Writes a 16-bit PCM WAV file of known length through a memory mapping sized up front.
+// Frames never written stay silent, and the header always describes the full length.
+public class MappedWavWriter implements AutoCloseable {
+	
+	private static final float SAMPLE_SCALE = 32767f;
+	
+	private final FileChannel channel;
+	private final MappedByteBuffer mapping;
+	private final ShortBuffer samples;
+	private final int channels;
+	
+	public MappedWavWriter(Path path, int channels, int sampleRate, long frames) throws IOException {
+		long dataLength = frames * channels * WavHeader.BYTES_PER_SAMPLE;
+		if (WavHeader.SIZE + dataLength > Integer.MAX_VALUE) {
+			throw new IOException(path + " would be too large to map in one piece");
+		}
+		
+		this.channels = channels;
+		this.channel = FileChannel.open(path,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			this.mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, WavHeader.SIZE + dataLength);
+			WavHeader.write(mapping, channels, sampleRate, dataLength);
+			this.samples = mapping.slice().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	// Writes one channel starting at frame, clipping anything outside [-1, 1]. Absolute writes
+	// only, so threads may fill different channels or ranges at once as long as they do not overlap.
+	public void write(int channel, long frame, float[] block, int frames) {
+		int writable = (int) Math.max(0, Math.min(frames, samples.limit() / channels - frame));
+		int index = (int) (frame * channels) + channel;
+		for (int i = 0; i < writable; i++, index += channels) {
+			float sample = Math.max(-1f, Math.min(block[i], 1f));
+			samples.put(index, (short) Math.round(sample * SAMPLE_SCALE));
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		mapping.force();
+		channel.close();
+	}
+	
+}
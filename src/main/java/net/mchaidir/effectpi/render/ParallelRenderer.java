@@ -0,0 +1,79 @@
+package net.mchaidir.effectpi.render;
+
+import net.mchaidir.effectpi.effect.EffectChain;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+// Renders many takes at once. Every channel of every take is its own task with its own copy of
+// the chain, reading and writing its own stride of the mapped files, so tasks share nothing and
+// throughput scales with the pool's parallelism. A take's files are mapped only while its task
+// runs, so a large directory never holds more mappings open than the pool has takes in flight.
+public class ParallelRenderer {
+	
+	private final ForkJoinPool pool;
+	private final int blockFrames;
+	
+	public ParallelRenderer(ForkJoinPool pool, int blockFrames) {
+		this.pool = pool;
+		this.blockFrames = blockFrames;
+	}
+	
+	// chainFactory builds the chain for a take's sample rate, it is copied once per channel.
+	// Returns the seconds of audio rendered, summed over takes.
+	public double render(List<RenderJob> jobs, IntFunction<EffectChain> chainFactory)
+			throws IOException, InterruptedException {
+		List<Callable<Double>> tasks = new ArrayList<>();
+		for (RenderJob job : jobs) {
+			tasks.add(() -> renderJob(job, chainFactory));
+		}
+		
+		double audioSeconds = 0;
+		for (Future<Double> result : pool.invokeAll(tasks)) {
+			try {
+				audioSeconds += result.get();
+			} catch (ExecutionException e) {
+				throw new IOException("Rendering failed", e.getCause());
+			}
+		}
+		return audioSeconds;
+	}
+	
+	// Runs in the pool, the channels fork from here and the files close as soon as they are done.
+	// The writer closes first, its mapping is flushed on close, and the reader closes regardless
+	private double renderJob(RenderJob job, IntFunction<EffectChain> chainFactory) throws IOException {
+		try (MappedWavReader reader = new MappedWavReader(job.getInput())) {
+			try (MappedWavWriter writer = new MappedWavWriter(job.getOutput(),
+					reader.getChannels(), reader.getSampleRate(), reader.getFrames())) {
+				EffectChain prototype = chainFactory.apply(reader.getSampleRate());
+				List<ForkJoinTask<?>> channels = new ArrayList<>();
+				for (int channel = 0; channel < reader.getChannels(); channel++) {
+					EffectChain chain = prototype.copy();
+					int renderedChannel = channel;
+					channels.add(ForkJoinTask.adapt(() -> renderChannel(reader, writer, chain, renderedChannel)));
+				}
+				ForkJoinTask.invokeAll(channels);
+			}
+			return reader.getHeader().getDurationSeconds();
+		}
+	}
+	
+	private void renderChannel(MappedWavReader reader, MappedWavWriter writer, EffectChain chain, int channel) {
+		float[] block = new float[blockFrames];
+		long frame = 0;
+		int frames;
+		while ((frames = reader.read(channel, frame, block, blockFrames)) > 0) {
+			chain.process(block, block, frames);
+			writer.write(channel, frame, block, frames);
+			frame += frames;
+		}
+	}
+	
+}
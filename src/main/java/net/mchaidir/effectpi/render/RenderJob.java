@@ -0,0 +1,14 @@
+package net.mchaidir.effectpi.render;
+
+import lombok.Value;
+
+import java.nio.file.Path;
+
+// One take to render, from input to output
+@Value
+public class RenderJob {
+	
+	Path input;
+	Path output;
+	
+}
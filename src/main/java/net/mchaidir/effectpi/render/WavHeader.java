@@ -0,0 +1,89 @@
+package net.mchaidir.effectpi.render;
+
+import lombok.Value;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Layout of a 16-bit PCM WAV file: where the interleaved samples start and how many there are
+@Value
+public class WavHeader {
+	
+	public static final int SIZE = 44;
+	public static final int BYTES_PER_SAMPLE = 2;
+	
+	private static final int RIFF = 0x46464952;
+	private static final int WAVE = 0x45564157;
+	private static final int FMT = 0x20746D66;
+	private static final int DATA = 0x61746164;
+	private static final int PCM_FORMAT = 1;
+	private static final int BITS_PER_SAMPLE = 16;
+	
+	int channels;
+	int sampleRate;
+	long dataOffset;
+	long dataLength;
+	
+	public long getFrames() {
+		return dataLength / ((long) channels * BYTES_PER_SAMPLE);
+	}
+	
+	public double getDurationSeconds() {
+		return (double) getFrames() / sampleRate;
+	}
+	
+	// Walks the chunk list of a file mapped or read from its start, skipping unknown chunks
+	public static WavHeader parse(ByteBuffer buffer) throws IOException {
+		buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.limit() < 12 || buffer.getInt(0) != RIFF || buffer.getInt(8) != WAVE) {
+			throw new IOException("Not a RIFF WAVE file");
+		}
+		
+		int channels = 0;
+		int sampleRate = 0;
+		int position = 12;
+		while (position + 8 <= buffer.limit()) {
+			int chunkId = buffer.getInt(position);
+			long chunkSize = buffer.getInt(position + 4) & 0xFFFFFFFFL;
+			int body = position + 8;
+			if (chunkId == FMT) {
+				if (buffer.getShort(body) != PCM_FORMAT || buffer.getShort(body + 14) != BITS_PER_SAMPLE) {
+					throw new IOException("Only 16-bit PCM is supported");
+				}
+				channels = buffer.getShort(body + 2);
+				sampleRate = buffer.getInt(body + 4);
+			} else if (chunkId == DATA) {
+				if (channels == 0) {
+					throw new IOException("No fmt chunk before the data chunk");
+				}
+				return new WavHeader(channels, sampleRate, body, Math.min(chunkSize, buffer.limit() - body));
+			}
+			// Chunks are padded to an even size
+			long next = body + chunkSize + (chunkSize & 1);
+			if (next > Integer.MAX_VALUE) {
+				break;
+			}
+			position = (int) next;
+		}
+		throw new IOException("No data chunk");
+	}
+	
+	// Canonical 44-byte header, written at the buffer's current position
+	public static void write(ByteBuffer buffer, int channels, int sampleRate, long dataLength) {
+		ByteOrder order = buffer.order();
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		int blockAlign = channels * BYTES_PER_SAMPLE;
+		buffer.putInt(RIFF).putInt((int) (SIZE - 8 + dataLength)).putInt(WAVE);
+		buffer.putInt(FMT).putInt(16)
+				.putShort((short) PCM_FORMAT)
+				.putShort((short) channels)
+				.putInt(sampleRate)
+				.putInt(sampleRate * blockAlign)
+				.putShort((short) blockAlign)
+				.putShort((short) BITS_PER_SAMPLE);
+		buffer.putInt(DATA).putInt((int) dataLength);
+		buffer.order(order);
+	}
+	
+}
@@ -0,0 +1,72 @@
+package net.mchaidir.effectpi.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Scripted knob turns and clicks, played against simulated Twists on their own thread.
+// A script is a comma separated list of at_ms:device:action, where action is a signed
+// number of detents or "click", e.g. "500:0:+3,800:1:-2,1200:0:click".
+public class KnobScript implements AutoCloseable {
+	
+	private static final String CLICK = "click";
+	
+	private final List<KnobStep> steps;
+	private final ScheduledExecutorService executor;
+	
+	public KnobScript(List<KnobStep> steps) {
+		this.steps = List.copyOf(steps);
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "knob-script");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	public static KnobScript parse(String script) {
+		List<KnobStep> steps = new ArrayList<>();
+		for (String entry : script.split(",")) {
+			String trimmed = entry.trim();
+			if (trimmed.isEmpty()) {
+				continue;
+			}
+			
+			String[] fields = trimmed.split(":");
+			if (fields.length != 3) {
+				throw new IllegalArgumentException("Expected at_ms:device:action, got " + trimmed);
+			}
+			long atMillis = Long.parseLong(fields[0]);
+			int device = Integer.parseInt(fields[1]);
+			boolean click = CLICK.equalsIgnoreCase(fields[2]);
+			int detents = click ? 0 : Integer.parseInt(fields[2]);
+			steps.add(new KnobStep(atMillis, device, detents, click));
+		}
+		return new KnobScript(steps);
+	}
+	
+	// Times are relative to this call
+	public void play(List<SimulatedTwist> twists) {
+		for (KnobStep step : steps) {
+			if (step.getDevice() < 0 || step.getDevice() >= twists.size()) {
+				throw new IllegalArgumentException("No simulated Twist " + step.getDevice());
+			}
+			
+			SimulatedTwist twist = twists.get(step.getDevice());
+			executor.schedule(() -> {
+				if (step.isClick()) {
+					twist.click();
+				} else {
+					twist.turn(step.getDetents());
+				}
+			}, step.getAtMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+	
+}
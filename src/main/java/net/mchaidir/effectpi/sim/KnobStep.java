@@ -0,0 +1,14 @@
+package net.mchaidir.effectpi.sim;
+
+import lombok.Value;
+
+// One scripted event, either a number of detents or a click
+@Value
+public class KnobStep {
+	
+	long atMillis;
+	int device;
+	int detents;
+	boolean click;
+	
+}
@@ -0,0 +1,43 @@
+package net.mchaidir.effectpi.sim;
+
+import com.pi4j.io.spi.SpiConfig;
+import com.pi4j.io.spi.SpiProvider;
+import com.pi4j.plugin.mock.provider.spi.MockSpi;
+
+// MCP3202 behind a Pi4J mock SPI device, answering each conversion with the next sample of a
+// recording. Once the recording runs out it answers with the midpoint code, i.e. silence.
+public class SimulatedAdc extends MockSpi {
+	
+	private static final int CODE_MIDPOINT = 2048;
+	private static final float CODE_SCALE = 2047f;
+	
+	private final float[] samples;
+	private volatile int position;
+	
+	public SimulatedAdc(SpiProvider provider, SpiConfig config, float[] samples) {
+		super(provider, config);
+		this.samples = samples;
+	}
+	
+	public boolean isExhausted() {
+		return position >= samples.length;
+	}
+	
+	@Override
+	public int transfer(byte[] write, int writeOffset, byte[] read, int readOffset, int numberOfBytes) {
+		int code = CODE_MIDPOINT;
+		int index = position;
+		if (index < samples.length) {
+			code = Math.round(samples[index] * CODE_SCALE) + CODE_MIDPOINT;
+			code = Math.max(0, Math.min(code, 4095));
+			position = index + 1;
+		}
+		
+		// Null bit and the top nibble in the second byte, the low byte in the third
+		read[readOffset] = 0;
+		read[readOffset + 1] = (byte) (code >> 8);
+		read[readOffset + 2] = (byte) code;
+		return numberOfBytes;
+	}
+	
+}
@@ -0,0 +1,40 @@
+package net.mchaidir.effectpi.sim;
+
+import com.pi4j.io.spi.SpiConfig;
+import com.pi4j.io.spi.SpiProvider;
+import com.pi4j.plugin.mock.provider.spi.MockSpi;
+
+import java.util.Arrays;
+
+// MCP4822 behind a Pi4J mock SPI device, recording every channel A word it is sent.
+// Capacity is fixed up front so the audio thread never grows the buffer, extra samples are dropped.
+public class SimulatedDac extends MockSpi {
+	
+	private static final int CODE_MIDPOINT = 2048;
+	private static final float CODE_SCALE = 2047f;
+	private static final int CHANNEL_B = 0x8000;
+	
+	private final float[] samples;
+	private volatile int position;
+	
+	public SimulatedDac(SpiProvider provider, SpiConfig config, int capacity) {
+		super(provider, config);
+		this.samples = new float[capacity];
+	}
+	
+	public float[] getSamples() {
+		return Arrays.copyOf(samples, position);
+	}
+	
+	@Override
+	public int write(byte[] data, int offset, int length) {
+		int word = ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+		int index = position;
+		if ((word & CHANNEL_B) == 0 && index < samples.length) {
+			samples[index] = ((word & 0x0FFF) - CODE_MIDPOINT) / CODE_SCALE;
+			position = index + 1;
+		}
+		return length;
+	}
+	
+}
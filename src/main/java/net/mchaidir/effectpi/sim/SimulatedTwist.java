@@ -0,0 +1,141 @@
+package net.mchaidir.effectpi.sim;
+
+import com.pi4j.io.gpio.digital.DigitalState;
+import com.pi4j.io.i2c.I2CConfig;
+import com.pi4j.io.i2c.I2CProvider;
+import com.pi4j.plugin.mock.provider.gpio.digital.MockDigitalInput;
+import com.pi4j.plugin.mock.provider.i2c.MockI2C;
+
+import java.util.concurrent.TimeUnit;
+
+// Qwiic Twist register map behind a Pi4J mock I2C device. Register reads and writes auto
+// increment like the firmware does, and turn/click update the event registers the way the
+// encoder would, holding the INT line low until interrupts are cleared. The firmware's INT
+// timeout is not modelled, INT is asserted as soon as an event lands.
+public class SimulatedTwist extends MockI2C {
+	
+	private static final int REGISTER_MAP_SIZE = 0x15;
+	private static final int REGISTER_VERSION = 0x02;
+	private static final int REGISTER_CLICKED = 0x03;
+	private static final int REGISTER_COUNT = 0x04;
+	private static final int REGISTER_PRESSED = 0x05;
+	private static final int REGISTER_DIFF = 0x06;
+	private static final int REGISTER_CLEAR_INTERRUPTS = 0x07;
+	private static final int REGISTER_MOVED = 0x0E;
+	private static final int REGISTER_SINCE_LAST_MOVEMENT = 0x10;
+	private static final int REGISTER_SINCE_LAST_PRESS = 0x11;
+	
+	private static final int FIRMWARE_VERSION = 0x0102;
+	
+	private final byte[] registers = new byte[REGISTER_MAP_SIZE];
+	// May be null, the Twist is then expected to be polled
+	private final MockDigitalInput interruptPin;
+	
+	private long lastMovementNanos;
+	private long lastPressNanos;
+	
+	public SimulatedTwist(I2CProvider provider, I2CConfig config, MockDigitalInput interruptPin) {
+		super(provider, config);
+		this.interruptPin = interruptPin;
+		this.lastMovementNanos = System.nanoTime();
+		this.lastPressNanos = lastMovementNanos;
+		putWord(REGISTER_VERSION, FIRMWARE_VERSION);
+		setInterrupt(false);
+	}
+	
+	// Positive detents turn clockwise
+	public void turn(int detents) {
+		synchronized (this) {
+			putWord(REGISTER_COUNT, word(REGISTER_COUNT) + detents);
+			// Multi-byte registers overlap their neighbours in the map, the higher register wins
+			registers[REGISTER_PRESSED] = 0x00;
+			putWord(REGISTER_DIFF, word(REGISTER_DIFF) + detents);
+			registers[REGISTER_MOVED] = 0x01;
+			lastMovementNanos = System.nanoTime();
+		}
+		setInterrupt(true);
+	}
+	
+	public void click() {
+		synchronized (this) {
+			registers[REGISTER_CLICKED] = 0x01;
+			registers[REGISTER_PRESSED] = 0x00;
+			lastPressNanos = System.nanoTime();
+		}
+		setInterrupt(true);
+	}
+	
+	@Override
+	public int read() {
+		return 0;
+	}
+	
+	@Override
+	public synchronized int readRegister(int register) {
+		refreshTimers();
+		return registers[register] & 0xFF;
+	}
+	
+	@Override
+	public synchronized int readRegister(int register, byte[] buffer, int offset, int length) {
+		refreshTimers();
+		for (int i = 0; i < length; i++) {
+			int address = register + i;
+			buffer[offset + i] = address < REGISTER_MAP_SIZE ? registers[address] : 0;
+		}
+		return length;
+	}
+	
+	@Override
+	public int writeRegister(int register, byte b) {
+		if (register == REGISTER_CLEAR_INTERRUPTS) {
+			synchronized (this) {
+				registers[REGISTER_CLICKED] = 0x00;
+				registers[REGISTER_MOVED] = 0x00;
+				putWord(REGISTER_DIFF, 0);
+			}
+			setInterrupt(false);
+			return 1;
+		}
+		
+		synchronized (this) {
+			if (register < REGISTER_MAP_SIZE) {
+				registers[register] = b;
+			}
+		}
+		return 1;
+	}
+	
+	@Override
+	public synchronized int writeRegister(int register, byte[] data, int offset, int length) {
+		for (int i = 0; i < length && register + i < REGISTER_MAP_SIZE; i++) {
+			registers[register + i] = data[offset + i];
+		}
+		return length;
+	}
+	
+	// Outside the monitor, listeners on the INT line run synchronously
+	private void setInterrupt(boolean asserted) {
+		if (interruptPin != null) {
+			// Open drain and active low
+			interruptPin.mockState(asserted ? DigitalState.LOW : DigitalState.HIGH);
+		}
+	}
+	
+	private void refreshTimers() {
+		long now = System.nanoTime();
+		putWord(REGISTER_SINCE_LAST_MOVEMENT, (int) Math.min(0x7FFF, TimeUnit.NANOSECONDS.toMillis(now - lastMovementNanos)));
+		putWord(REGISTER_SINCE_LAST_PRESS, (int) Math.min(0x7FFF, TimeUnit.NANOSECONDS.toMillis(now - lastPressNanos)));
+	}
+	
+	// Little endian, as Twist decodes it
+	private int word(int register) {
+		return (short) ((registers[register + 1] << 8) | (registers[register] & 0xFF));
+	}
+	
+	private void putWord(int register, int value) {
+		registers[register] = (byte) value;
+		registers[register + 1] = (byte) (value >> 8);
+	}
+	
+}
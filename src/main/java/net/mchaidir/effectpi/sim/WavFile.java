@@ -0,0 +1,52 @@
+package net.mchaidir.effectpi.sim;
+
+import lombok.Getter;
+import net.mchaidir.effectpi.render.WavHeader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Mono 16-bit PCM WAV, held in memory as normalised floats. Multichannel input keeps its first channel.
+@Getter
+public class WavFile {
+	
+	private static final float SAMPLE_SCALE = 32767f;
+	
+	private final int sampleRate;
+	private final float[] samples;
+	
+	public WavFile(int sampleRate, float[] samples) {
+		this.sampleRate = sampleRate;
+		this.samples = samples;
+	}
+	
+	public static WavFile read(Path path) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+		WavHeader header = WavHeader.parse(buffer);
+		int stride = header.getChannels() * WavHeader.BYTES_PER_SAMPLE;
+		int dataOffset = (int) header.getDataOffset();
+		float[] samples = new float[(int) header.getFrames()];
+		for (int i = 0; i < samples.length; i++) {
+			samples[i] = buffer.getShort(dataOffset + i * stride) / SAMPLE_SCALE;
+		}
+		return new WavFile(header.getSampleRate(), samples);
+	}
+	
+	public void write(Path path) throws IOException {
+		int dataLength = samples.length * WavHeader.BYTES_PER_SAMPLE;
+		ByteBuffer buffer = ByteBuffer.allocate(WavHeader.SIZE + dataLength).order(ByteOrder.LITTLE_ENDIAN);
+		WavHeader.write(buffer, 1, sampleRate, dataLength);
+		for (float sample : samples) {
+			buffer.putShort((short) Math.round(Math.max(-1f, Math.min(sample, 1f)) * SAMPLE_SCALE));
+		}
+		Files.write(path, buffer.array());
+	}
+	
+	public double getDurationSeconds() {
+		return (double) samples.length / sampleRate;
+	}
+	
+}
@@ -0,0 +1,70 @@
+package net.mchaidir.effectpi.dsp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FftTest {
+	
+	private static final int[] SIZES = {4, 8, 64, 256, 4096};
+	private static final double MAX_ROUND_TRIP_ERROR = 1e-5;
+	
+	@Test
+	void inverseUndoesForward() {
+		for (int size : SIZES) {
+			Random random = new Random(size);
+			Fft fft = new Fft(size);
+			float[] input = new float[size];
+			for (int i = 0; i < size; i++) {
+				input[i] = (float) random.nextGaussian();
+			}
+			
+			float[] re = new float[fft.getBins()];
+			float[] im = new float[fft.getBins()];
+			float[] output = new float[size];
+			fft.forward(input, re, im);
+			fft.inverse(re, im, output);
+			
+			for (int i = 0; i < size; i++) {
+				assertEquals(input[i], output[i], MAX_ROUND_TRIP_ERROR, "size " + size + ", sample " + i);
+			}
+		}
+	}
+	
+	@Test
+	void forwardMatchesDirectTransform() {
+		int size = 64;
+		Random random = new Random(1);
+		Fft fft = new Fft(size);
+		float[] input = new float[size];
+		for (int i = 0; i < size; i++) {
+			input[i] = (float) random.nextGaussian();
+		}
+		
+		float[] re = new float[fft.getBins()];
+		float[] im = new float[fft.getBins()];
+		fft.forward(input, re, im);
+		
+		for (int k = 0; k < fft.getBins(); k++) {
+			double expectedRe = 0.0;
+			double expectedIm = 0.0;
+			for (int n = 0; n < size; n++) {
+				double angle = 2.0 * Math.PI * k * n / size;
+				expectedRe += input[n] * Math.cos(angle);
+				expectedIm -= input[n] * Math.sin(angle);
+			}
+			assertEquals(expectedRe, re[k], 1e-4, "bin " + k + " real");
+			assertEquals(expectedIm, im[k], 1e-4, "bin " + k + " imaginary");
+		}
+	}
+	
+	@Test
+	void rejectsSizesThatAreNotPowersOfTwo() {
+		assertThrows(IllegalArgumentException.class, () -> new Fft(2));
+		assertThrows(IllegalArgumentException.class, () -> new Fft(48));
+	}
+	
+}
@@ -0,0 +1,84 @@
+package net.mchaidir.effectpi.dsp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The convolver against a direct FIR in double precision. Output lags input by one partition,
+// and process is fed calls of odd sizes so partitions fill across call boundaries.
+class PartitionedConvolverTest {
+	
+	private static final int IMPULSE_FRAMES = 1000;
+	private static final int SIGNAL_FRAMES = 8192;
+	private static final int[] CALL_FRAMES = {37, 1, 129, 64, 3, 250};
+	// Float transforms land near 2e-7 of the peak with 64 or 128 frame partitions and near 1e-6
+	// with two, where five hundred partitions are summed per bin
+	private static final double MAX_RELATIVE_ERROR = 4e-6;
+	
+	@Test
+	void matchesDirectConvolutionWithTwoFramePartitions() {
+		assertMatchesDirectConvolution(2);
+	}
+	
+	@Test
+	void matchesDirectConvolutionWith64FramePartitions() {
+		assertMatchesDirectConvolution(64);
+	}
+	
+	@Test
+	void matchesDirectConvolutionWith128FramePartitions() {
+		assertMatchesDirectConvolution(128);
+	}
+	
+	@Test
+	void latencyIsOnePartition() {
+		PartitionedConvolver convolver = new PartitionedConvolver(new ConvolutionKernel(new float[] {1f}, 64));
+		assertEquals(64, convolver.getLatencyFrames());
+		
+		float[] buffer = new float[256];
+		buffer[0] = 1f;
+		convolver.process(buffer, 0, buffer.length);
+		for (int i = 0; i < buffer.length; i++) {
+			assertEquals(i == 64 ? 1f : 0f, buffer[i], 1e-6f, "frame " + i);
+		}
+	}
+	
+	private static void assertMatchesDirectConvolution(int partitionFrames) {
+		Random random = new Random(partitionFrames);
+		float[] impulse = new float[IMPULSE_FRAMES];
+		for (int i = 0; i < impulse.length; i++) {
+			impulse[i] = (float) (random.nextGaussian() * Math.exp(-4.0 * i / IMPULSE_FRAMES));
+		}
+		float[] input = new float[SIGNAL_FRAMES];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = (float) (random.nextGaussian() * 0.1);
+		}
+		
+		PartitionedConvolver convolver = new PartitionedConvolver(new ConvolutionKernel(impulse, partitionFrames));
+		float[] output = input.clone();
+		int offset = 0;
+		for (int call = 0; offset < output.length; call++) {
+			int frames = Math.min(CALL_FRAMES[call % CALL_FRAMES.length], output.length - offset);
+			convolver.process(output, offset, frames);
+			offset += frames;
+		}
+		
+		double maxError = 0.0;
+		double peak = 0.0;
+		for (int i = 0; i < output.length; i++) {
+			int t = i - partitionFrames;
+			double expected = 0.0;
+			for (int k = 0; k < impulse.length && k <= t; k++) {
+				expected += (double) impulse[k] * input[t - k];
+			}
+			maxError = Math.max(maxError, Math.abs(expected - output[i]));
+			peak = Math.max(peak, Math.abs(expected));
+		}
+		assertTrue(maxError <= MAX_RELATIVE_ERROR * peak,
+				"partitions of " + partitionFrames + ": error " + maxError + " against peak " + peak);
+	}
+	
+}
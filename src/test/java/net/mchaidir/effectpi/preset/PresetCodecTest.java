@@ -0,0 +1,136 @@
+package net.mchaidir.effectpi.preset;
+
+import net.mchaidir.effectpi.dsp.ClippingCurve;
+import net.mchaidir.effectpi.dsp.EnvelopeDetector;
+import net.mchaidir.effectpi.dsp.OversamplingFactor;
+import net.mchaidir.effectpi.effect.compressor.CompressorParameters;
+import net.mchaidir.effectpi.effect.distortion.DistortionParameters;
+import net.mchaidir.effectpi.effect.impl.DelayParameters;
+import net.mchaidir.effectpi.sim.WavFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PresetCodecTest {
+	
+	private static final float SAMPLE_STEP = 1f / 32767f;
+	
+	@Test
+	void roundTripKeepsEveryField() throws IOException {
+		float[] samples = {0f, 1f, -1f, 0.5f, -0.25f, 0.123f};
+		Preset preset = new Preset(
+				List.of(Preset.CLEAN, Preset.DISTORTION, Preset.CABINET, Preset.DELAY, Preset.COMPRESSOR, Preset.CABINET),
+				List.of(false, false, true, true, false, false),
+				DistortionParameters.defaults().toBuilder()
+						.distortionValue(77)
+						.bass(1.25)
+						.clippingCurve(ClippingCurve.ASYMMETRIC)
+						.oversampling(OversamplingFactor.X8)
+						.build(),
+				CompressorParameters.defaults().toBuilder()
+						.thresholdDb(-31.5)
+						.ratio(6.0)
+						.detector(EnvelopeDetector.RMS)
+						.build(),
+				DelayParameters.chorus().toBuilder()
+						.feedbackPercent(42)
+						.build(),
+				new WavFile(44100, samples));
+		
+		Preset read = roundTrip(preset);
+		
+		assertEquals(preset.getEffects(), read.getEffects());
+		assertEquals(preset.getBypassed(), read.getBypassed());
+		assertEquals(preset.getDistortionParameters(), read.getDistortionParameters());
+		assertEquals(preset.getCompressorParameters(), read.getCompressorParameters());
+		assertEquals(preset.getDelayParameters(), read.getDelayParameters());
+		assertEquals(44100, read.getCabinetImpulse().getSampleRate());
+		assertEquals(samples.length, read.getCabinetImpulse().getSamples().length);
+		for (int i = 0; i < samples.length; i++) {
+			assertEquals(samples[i], read.getCabinetImpulse().getSamples()[i], SAMPLE_STEP, "sample " + i);
+		}
+	}
+	
+	@Test
+	void roundTripWithoutImpulse() throws IOException {
+		Preset read = roundTrip(Preset.defaults());
+		
+		assertEquals(Preset.defaults().getEffects(), read.getEffects());
+		assertEquals(Preset.defaults().getDistortionParameters(), read.getDistortionParameters());
+		assertNull(read.getCabinetImpulse());
+	}
+	
+	@Test
+	void refusesTooManyEffectsBeforeWriting() {
+		List<String> effects = Collections.nCopies(256, Preset.CLEAN);
+		Preset preset = new Preset(effects, new ArrayList<>(Collections.nCopies(256, false)),
+				DistortionParameters.defaults(), CompressorParameters.defaults(), DelayParameters.defaults(), null);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		
+		assertThrows(IOException.class, () -> PresetCodec.write(preset, output));
+		assertEquals(0, output.size());
+	}
+	
+	@Test
+	void rejectsUnknownEnumName() throws IOException {
+		Preset preset = new Preset(List.of(Preset.DISTORTION), List.of(false),
+				DistortionParameters.defaults().toBuilder().clippingCurve(ClippingCurve.HARD).build(),
+				CompressorParameters.defaults(), DelayParameters.defaults(), null);
+		byte[] bytes = encode(preset);
+		int name = indexOf(bytes, "HARD".getBytes(StandardCharsets.UTF_8));
+		assertTrue(name > 0);
+		bytes[name] = 'Y';
+		
+		assertThrows(IOException.class, () -> PresetCodec.read(new ByteArrayInputStream(bytes)));
+	}
+	
+	@Test
+	void rejectsCorruptImpulseLength() throws IOException {
+		float[] samples = new float[8];
+		Preset preset = new Preset(List.of(Preset.CABINET), List.of(false), DistortionParameters.defaults(),
+				CompressorParameters.defaults(), DelayParameters.defaults(), new WavFile(48000, samples));
+		byte[] bytes = encode(preset);
+		// The length sits just before the 16-bit samples at the end
+		bytes[bytes.length - 2 * samples.length - 4] = (byte) 0x80;
+		
+		assertThrows(IOException.class, () -> PresetCodec.read(new ByteArrayInputStream(bytes)));
+	}
+	
+	private static Preset roundTrip(Preset preset) throws IOException {
+		byte[] bytes = encode(preset);
+		ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+		assertTrue(PresetCodec.isEncoded(input));
+		return PresetCodec.read(input);
+	}
+	
+	private static byte[] encode(Preset preset) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		PresetCodec.write(preset, output);
+		return output.toByteArray();
+	}
+	
+	private static int indexOf(byte[] bytes, byte[] pattern) {
+		for (int i = 0; i + pattern.length <= bytes.length; i++) {
+			int matched = 0;
+			while (matched < pattern.length && bytes[i + matched] == pattern[matched]) {
+				matched++;
+			}
+			if (matched == pattern.length) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+}